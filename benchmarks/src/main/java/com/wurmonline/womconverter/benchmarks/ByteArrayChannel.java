@@ -0,0 +1,35 @@
+package com.wurmonline.womconverter.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Channel collecting everything written to it, used to prepare benchmark inputs in memory.
+ */
+final class ByteArrayChannel implements WritableByteChannel {
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    ByteBuffer toByteBuffer() {
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        int count = src.remaining();
+        byte[] chunk = new byte[count];
+        src.get(chunk);
+        bytes.write(chunk, 0, count);
+        return count;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+    }
+}
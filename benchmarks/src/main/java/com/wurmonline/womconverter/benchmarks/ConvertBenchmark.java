@@ -0,0 +1,70 @@
+package com.wurmonline.womconverter.benchmarks;
+
+import com.wurmonline.womconverter.converters.AssimpToWOMConverter;
+import com.wurmonline.womconverter.converters.ConversionOptions;
+import com.wurmonline.womconverter.converters.WOMToDAEConverter;
+import com.wurmonline.womconverter.events.ConversionListener;
+import com.wurmonline.womconverter.io.WomWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * End-to-end conversion of files on disk through the public converter entry points:
+ * OBJ to WOM through Assimp and WOM to DAE, with a quiet listener.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ConvertBenchmark {
+
+    @Param({"1000", "32000", "32768"})
+    public int verticesCount;
+
+    private File directory;
+    private File objFile;
+    private File womFile;
+    private File outputDirectory;
+    private final ConversionOptions options = new ConversionOptions();
+
+    @Setup
+    public void setup() throws IOException {
+        options.setGenerateTangents(true);
+        directory = Files.createTempDirectory("womconverter-benchmark").toFile();
+        outputDirectory = new File(directory, "out");
+        outputDirectory.mkdir();
+        objFile = new File(directory, "synthetic.obj");
+        SyntheticMeshes.writeObj(SyntheticMeshes.grid("synthetic", verticesCount), objFile);
+        womFile = new File(directory, "synthetic.wom");
+        try (WomWriter writer = WomWriter.open(womFile)) {
+            writer.writeModel(SyntheticMeshes.model(verticesCount));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<java.nio.file.Path> files = Files.walk(directory.toPath())) {
+            files.sorted(Comparator.reverseOrder()).map(java.nio.file.Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public void objToWom(ThroughputCounters counters) throws IOException {
+        AssimpToWOMConverter.convert(objFile, outputDirectory, options, null, null, ConversionListener.QUIET);
+        counters.add(new File(outputDirectory, "synthetic.wom").length(), verticesCount);
+    }
+
+    @Benchmark
+    public void womToDae(ThroughputCounters counters) throws IOException {
+        WOMToDAEConverter.convert(womFile, outputDirectory, options, null, ConversionListener.QUIET);
+        counters.add(new File(outputDirectory, "synthetic.dae").length(), verticesCount);
+    }
+}
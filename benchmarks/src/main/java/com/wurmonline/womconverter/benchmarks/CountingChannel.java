@@ -0,0 +1,37 @@
+package com.wurmonline.womconverter.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Channel discarding everything written to it, so benchmarks measure encoding and not the disk.
+ */
+final class CountingChannel implements WritableByteChannel {
+
+    private long written;
+
+    long written() {
+        return written;
+    }
+
+    void reset() {
+        written = 0;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        int bytes = src.remaining();
+        src.position(src.limit());
+        written += bytes;
+        return bytes;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+    }
+}
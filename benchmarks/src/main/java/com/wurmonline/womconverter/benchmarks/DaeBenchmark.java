@@ -0,0 +1,62 @@
+package com.wurmonline.womconverter.benchmarks;
+
+import com.wurmonline.womconverter.io.DaeWriter;
+import com.wurmonline.womconverter.model.Material;
+import com.wurmonline.womconverter.model.Mesh;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * COLLADA text generation of a single synthetic mesh, in the order WOMToDAEConverter writes it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class DaeBenchmark {
+
+    @Param({"1000", "32000", "32768"})
+    public int verticesCount;
+
+    private Mesh mesh;
+    private final CountingChannel channel = new CountingChannel();
+
+    @Setup
+    public void setup() {
+        mesh = SyntheticMeshes.grid("synthetic", verticesCount);
+    }
+
+    @Benchmark
+    public long emitDae(ThroughputCounters counters) throws IOException {
+        channel.reset();
+        Material material = mesh.getMaterials()[0];
+        try (DaeWriter out = new DaeWriter(channel)) {
+            out.writeHeader();
+            out.beginLibrary("library_images");
+            out.writeImage(material);
+            out.endLibrary("library_images");
+            out.beginLibrary("library_materials");
+            out.writeMaterial(material);
+            out.endLibrary("library_materials");
+            out.beginLibrary("library_effects");
+            out.writeEffect(material);
+            out.endLibrary("library_effects");
+            out.beginLibrary("library_geometries");
+            out.writeGeometry(mesh, material.getMaterialName());
+            out.endLibrary("library_geometries");
+            out.beginLibrary("library_visual_scenes");
+            out.writeVisualScene(mesh.getName(), material.getMaterialName());
+            out.endLibrary("library_visual_scenes");
+            out.beginScene();
+            out.writeInstanceVisualScene(mesh.getName());
+            out.endScene();
+            out.writeFooter();
+        }
+        counters.add(channel.written(), verticesCount);
+        return channel.written();
+    }
+}
@@ -0,0 +1,52 @@
+package com.wurmonline.womconverter.benchmarks;
+
+import com.wurmonline.womconverter.io.FloatFormatter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link FloatFormatter} with {@code String.format("%.6f")} on vertex-like values.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class FloatFormatterBenchmark {
+
+    private static final int VALUES_COUNT = 3 * 1024;
+
+    private final float[] values = new float[VALUES_COUNT];
+    private final StringBuilder sb = new StringBuilder(VALUES_COUNT * 16);
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (random.nextFloat() * 2 - 1) * 100;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES_COUNT)
+    public int floatFormatter() {
+        sb.setLength(0);
+        for (float value : values) {
+            FloatFormatter.append(sb, value, 6).append(' ');
+        }
+        return sb.length();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES_COUNT)
+    public int stringFormat() {
+        sb.setLength(0);
+        for (float value : values) {
+            sb.append(String.format("%.6f", value)).append(' ');
+        }
+        return sb.length();
+    }
+}
@@ -0,0 +1,113 @@
+package com.wurmonline.womconverter.benchmarks;
+
+import com.wurmonline.womconverter.model.Material;
+import com.wurmonline.womconverter.model.Mesh;
+import com.wurmonline.womconverter.model.Model;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Locale;
+
+/**
+ * Generates deterministic wavy grid meshes of an exact vertex count, so benchmark results
+ * do not depend on external model files.
+ */
+final class SyntheticMeshes {
+
+    private SyntheticMeshes() {
+    }
+
+    /**
+     * Creates a mesh with tangents and binormals, the layout written with -generatetangents.
+     * The grid is as square as possible; quads with a vertex past the count are left out.
+     */
+    static Mesh grid(String name, int verticesCount) {
+        int columns = (int) Math.ceil(Math.sqrt(verticesCount));
+        int rows = (verticesCount + columns - 1) / columns;
+        Mesh mesh = new Mesh(name, verticesCount, false, true, true);
+        float[] positions = mesh.getPositions();
+        float[] normals = mesh.getNormals();
+        float[] uvs = mesh.getUvs();
+        float[] tangents = mesh.getTangents();
+        float[] binormals = mesh.getBinormals();
+        for (int i = 0; i < verticesCount; i++) {
+            int column = i % columns;
+            int row = i / columns;
+            float x = column * 0.1f;
+            float y = row * 0.1f;
+            float slopeX = (float) Math.cos(x) * 0.25f;
+            float slopeY = (float) -Math.sin(y) * 0.25f;
+            float length = (float) Math.sqrt(slopeX * slopeX + slopeY * slopeY + 1);
+            positions[i * 3] = x;
+            positions[i * 3 + 1] = y;
+            positions[i * 3 + 2] = (float) (Math.sin(x) + Math.cos(y)) * 0.25f;
+            normals[i * 3] = -slopeX / length;
+            normals[i * 3 + 1] = -slopeY / length;
+            normals[i * 3 + 2] = 1 / length;
+            uvs[i * 2] = column / (float) Math.max(1, columns - 1);
+            uvs[i * 2 + 1] = row / (float) Math.max(1, rows - 1);
+            tangents[i * 3] = 1;
+            binormals[i * 3 + 1] = 1;
+        }
+
+        int[] indices = new int[(columns - 1) * (rows - 1) * 6];
+        int count = 0;
+        for (int row = 0; row < rows - 1; row++) {
+            for (int column = 0; column < columns - 1; column++) {
+                int corner = row * columns + column;
+                if (corner + columns + 1 >= verticesCount) continue;
+                indices[count++] = corner;
+                indices[count++] = corner + 1;
+                indices[count++] = corner + columns;
+                indices[count++] = corner + 1;
+                indices[count++] = corner + columns + 1;
+                indices[count++] = corner + columns;
+            }
+        }
+        mesh.setIndices(java.util.Arrays.copyOf(indices, count));
+
+        Material material = new Material("synthetic.png", "synthetic");
+        material.getEmissive()[3] = 1;
+        material.setShininess(10);
+        material.getSpecular()[3] = 1;
+        material.getTransparency()[3] = 1;
+        mesh.setMaterials(material);
+        return mesh;
+    }
+
+    static Model model(int verticesCount) {
+        Model model = new Model();
+        model.addMesh(grid("synthetic", verticesCount));
+        return model;
+    }
+
+    /**
+     * Writes the mesh as a Wavefront OBJ file for benchmarks going through Assimp.
+     */
+    static void writeObj(Mesh mesh, File file) throws IOException {
+        float[] positions = mesh.getPositions();
+        float[] normals = mesh.getNormals();
+        float[] uvs = mesh.getUvs();
+        try (Writer out = new BufferedWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))) {
+            out.write("o " + mesh.getName() + "\n");
+            for (int i = 0; i < mesh.getVerticesCount(); i++) {
+                out.write(String.format(Locale.ROOT, "v %f %f %f\n", positions[i * 3], positions[i * 3 + 1], positions[i * 3 + 2]));
+            }
+            for (int i = 0; i < mesh.getVerticesCount(); i++) {
+                out.write(String.format(Locale.ROOT, "vn %f %f %f\n", normals[i * 3], normals[i * 3 + 1], normals[i * 3 + 2]));
+            }
+            for (int i = 0; i < mesh.getVerticesCount(); i++) {
+                out.write(String.format(Locale.ROOT, "vt %f %f\n", uvs[i * 2], uvs[i * 2 + 1]));
+            }
+            int[] indices = mesh.getIndices();
+            for (int i = 0; i < indices.length; i += 3) {
+                int a = indices[i] + 1, b = indices[i + 1] + 1, c = indices[i + 2] + 1;
+                out.write("f " + a + "/" + a + "/" + a + " " + b + "/" + b + "/" + b + " " + c + "/" + c + "/" + c + "\n");
+            }
+        }
+    }
+}
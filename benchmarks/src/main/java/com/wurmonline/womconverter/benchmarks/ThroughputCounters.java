@@ -0,0 +1,38 @@
+package com.wurmonline.womconverter.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Secondary results reported next to the operation rate: megabytes of WOM or DAE data written
+ * or read and mesh vertices processed, both per benchmark output time unit.
+ */
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+@State(Scope.Thread)
+public class ThroughputCounters {
+
+    private long bytes;
+    private long vertices;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        bytes = 0;
+        vertices = 0;
+    }
+
+    public double megabytes() {
+        return bytes / (1024.0 * 1024.0);
+    }
+
+    public long vertices() {
+        return vertices;
+    }
+
+    void add(long bytes, long vertices) {
+        this.bytes += bytes;
+        this.vertices += vertices;
+    }
+}
@@ -0,0 +1,60 @@
+package com.wurmonline.womconverter.benchmarks;
+
+import com.wurmonline.womconverter.io.WomReader;
+import com.wurmonline.womconverter.io.WomWriter;
+import com.wurmonline.womconverter.model.Model;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WOM encoding and decoding of a single synthetic mesh, without touching the disk.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class WomBenchmark {
+
+    /**
+     * 32768 vertices is the most a WOM mesh can address with its 16-bit indices.
+     */
+    @Param({"1000", "32000", "32768"})
+    public int verticesCount;
+
+    @Param({"false", "true"})
+    public boolean compact;
+
+    private Model model;
+    private ByteBuffer wom;
+    private final CountingChannel channel = new CountingChannel();
+
+    @Setup
+    public void setup() throws IOException {
+        model = SyntheticMeshes.model(verticesCount);
+        ByteArrayChannel output = new ByteArrayChannel();
+        try (WomWriter writer = new WomWriter(output, compact)) {
+            writer.writeModel(model);
+        }
+        wom = output.toByteBuffer();
+    }
+
+    @Benchmark
+    public long writeWom(ThroughputCounters counters) throws IOException {
+        channel.reset();
+        new WomWriter(channel, compact).writeModel(model);
+        counters.add(channel.written(), verticesCount);
+        return channel.written();
+    }
+
+    @Benchmark
+    public Model readWom(ThroughputCounters counters) throws IOException {
+        Model result = new WomReader(wom.duplicate()).readModel();
+        counters.add(wom.remaining(), verticesCount);
+        return result;
+    }
+}
@@ -0,0 +1,237 @@
+package com.wurmonline.womconverter;
+
+import com.wurmonline.womconverter.converters.AssimpToWOMConverter;
+import com.wurmonline.womconverter.converters.ConversionOptions;
+import com.wurmonline.womconverter.converters.WOMToDAEConverter;
+import com.wurmonline.womconverter.events.ConsoleListener;
+import com.wurmonline.womconverter.events.ConversionListener;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.regex.Pattern;
+
+/**
+ * Converts all matching files of a directory tree on a work-stealing pool.
+ * The tree is walked once up front and files are processed in a stable order, so
+ * reports and summaries do not depend on the number of threads. Inputs that map to the
+ * same output file are converted one after another in that order, like a sequential run would.
+ */
+public class BatchConverter {
+
+    public static class Job {
+        final int index;
+        final File inputFile;
+        final File outputDirectory;
+        final String relativePath;
+        boolean skipped = false;
+        Exception error = null;
+
+        Job(int index, File inputFile, File outputDirectory, String relativePath) {
+            this.index = index;
+            this.inputFile = inputFile;
+            this.outputDirectory = outputDirectory;
+            this.relativePath = relativePath;
+        }
+
+        public File getInputFile() {
+            return inputFile;
+        }
+
+        public File getOutputFile() {
+            return outputFileFor(inputFile, outputDirectory);
+        }
+
+        /**
+         * Path of the input file relative to the input directory of the batch, separated with '/'.
+         */
+        public String getRelativePath() {
+            return relativePath;
+        }
+
+        public boolean isSkipped() {
+            return skipped;
+        }
+
+        public Exception getError() {
+            return error;
+        }
+    }
+
+    private final ConversionOptions options;
+    private final int threads;
+    private MatReporter matReport = null;
+    private NativeMemoryReporter nativeReport = null;
+    private ConversionCache cache = null;
+    private ConversionListener listener = new ConsoleListener(System.out, System.err, false);
+    private int jobsCount = 0;
+
+    public BatchConverter(ConversionOptions options, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Threads count must be at least 1");
+        }
+        this.options = options;
+        this.threads = threads;
+    }
+
+    public void setMatReport(MatReporter matReport) {
+        this.matReport = matReport;
+    }
+
+    public void setNativeReport(NativeMemoryReporter nativeReport) {
+        this.nativeReport = nativeReport;
+    }
+
+    public void setListener(ConversionListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Enables incremental conversion: files whose cache key did not change since the last run are skipped.
+     */
+    public void setCache(ConversionCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Converts all files matching the pattern and returns the jobs in processing order.
+     * Failure of a single file is recorded in its job and does not stop the batch.
+     */
+    public List<Job> convertFiles(File inputDirectory, File outputDirectory, Pattern pattern, boolean recursive) {
+        List<Job> jobs = new ArrayList<>();
+        collectJobs(inputDirectory, outputDirectory, "", pattern, recursive, jobsCount, jobs);
+        jobsCount += jobs.size();
+        return convert(jobs);
+    }
+
+    /**
+     * Converts the given files of the input directory tree, placing the outputs in the same
+     * subdirectories of the output directory as {@link #convertFiles(File, File, Pattern, boolean)} does.
+     * Returns the jobs in the order of the files.
+     */
+    public List<Job> convertFiles(File inputDirectory, File outputDirectory, List<File> inputFiles) {
+        List<Job> jobs = new ArrayList<>();
+        Path inputRoot = inputDirectory.toPath().toAbsolutePath().normalize();
+        for (File inputFile : inputFiles) {
+            Path relative = inputRoot.relativize(inputFile.toPath().toAbsolutePath().normalize());
+            File jobOutputDirectory = relative.getParent() != null ? new File(outputDirectory, relative.getParent().toString()) : outputDirectory;
+            if (!jobOutputDirectory.isDirectory()) {
+                jobOutputDirectory.mkdirs();
+            }
+            String relativePath = relative.toString().replace(File.separatorChar, '/');
+            jobs.add(new Job(jobsCount + jobs.size(), inputFile, jobOutputDirectory, relativePath));
+        }
+        jobsCount += jobs.size();
+        return convert(jobs);
+    }
+
+    private List<Job> convert(List<Job> jobs) {
+        Map<File, List<Job>> jobsByOutput = new LinkedHashMap<>();
+        for (Job job : jobs) {
+            jobsByOutput.computeIfAbsent(job.getOutputFile().getAbsoluteFile(), f -> new ArrayList<>()).add(job);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<ForkJoinTask<?>> tasks = new ArrayList<>();
+            for (List<Job> group : jobsByOutput.values()) {
+                tasks.add(pool.submit(() -> group.forEach(job -> convert(job, listener))));
+            }
+            tasks.forEach(ForkJoinTask::join);
+        } finally {
+            pool.shutdown();
+        }
+        return jobs;
+    }
+
+    /**
+     * Converts a single file on the calling thread, reporting to the given listener instead of the batch one.
+     * Its materials are reported as soon as it finishes, outside of the batch order.
+     */
+    public Job convertFile(File inputFile, File outputDirectory, ConversionListener listener) {
+        Job job = new Job(-1, inputFile, outputDirectory, inputFile.getName());
+        convert(job, listener);
+        return job;
+    }
+
+    private void convert(Job job, ConversionListener listener) {
+        if (matReport != null && job.index >= 0) matReport.beginFile(job.index);
+        try {
+            String key = null;
+            if (cache != null) {
+                key = cache.key(job.inputFile);
+                if (cache.isUpToDate(job.relativePath, key, outputFilesFor(job.inputFile, job.outputDirectory, options))) {
+                    job.skipped = true;
+                    return;
+                }
+                cache.remove(job.relativePath);
+            }
+            String fn = job.inputFile.getName().toLowerCase();
+            if (fn.endsWith(".wom")) {
+                WOMToDAEConverter.convert(job.inputFile, job.outputDirectory, options, matReport, listener);
+            } else {
+                AssimpToWOMConverter.convert(job.inputFile, job.outputDirectory, options, matReport, nativeReport, listener);
+            }
+            // the converters throw when the input can't be converted, so reaching this point means the outputs were written
+            if (cache != null) {
+                cache.update(job.relativePath, key);
+            }
+        } catch (Exception e) {
+            job.error = e;
+            listener.error(job.inputFile, "Failed to convert file: " + job.inputFile.getPath() + " - " + e, e);
+        } finally {
+            if (matReport != null && job.index >= 0) matReport.endFile();
+        }
+    }
+
+    private static void collectJobs(File inputDirectory, File outputDirectory, String relativeDirectory, Pattern pattern, boolean recursive, int firstIndex, List<Job> jobs) {
+        File[] filteredFiles = inputDirectory.listFiles(file -> !file.isDirectory() && pattern.matcher(file.getName()).matches());
+        if (filteredFiles == null) return;
+        Arrays.sort(filteredFiles, Comparator.comparing(File::getName));
+        if (filteredFiles.length > 0 && !outputDirectory.isDirectory()) {
+            outputDirectory.mkdirs();
+        }
+        for (File file : filteredFiles) {
+            jobs.add(new Job(firstIndex + jobs.size(), file, outputDirectory, relativeDirectory + file.getName()));
+        }
+        if (recursive) {
+            File[] directories = inputDirectory.listFiles(File::isDirectory);
+            if (directories == null) return;
+            Arrays.sort(directories, Comparator.comparing(File::getName));
+            for (File directory : directories) {
+                collectJobs(directory, new File(outputDirectory, directory.getName()), relativeDirectory + directory.getName() + "/", pattern, recursive, firstIndex, jobs);
+            }
+        }
+    }
+
+    /**
+     * All files written for the input: the converted file and, for models converted to WOM, their levels of detail.
+     */
+    static List<File> outputFilesFor(File inputFile, File outputDirectory, ConversionOptions options) {
+        List<File> outputFiles = new ArrayList<>();
+        File outputFile = outputFileFor(inputFile, outputDirectory);
+        outputFiles.add(outputFile);
+        if (outputFile.getName().endsWith(".wom")) {
+            String modelFileName = outputFile.getName().substring(0, outputFile.getName().length() - 4);
+            for (int level = 1; level <= options.getLodRatios().length; level++) {
+                outputFiles.add(new File(outputDirectory, modelFileName + "_lod" + level + ".wom"));
+            }
+        }
+        return outputFiles;
+    }
+
+    static File outputFileFor(File inputFile, File outputDirectory) {
+        String name = inputFile.getName();
+        int dot = name.lastIndexOf('.');
+        String modelFileName = dot >= 0 ? name.substring(0, dot) : name;
+        String extension = name.toLowerCase().endsWith(".wom") ? ".dae" : ".wom";
+        return new File(outputDirectory, modelFileName + extension);
+    }
+}
@@ -0,0 +1,113 @@
+package com.wurmonline.womconverter;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.wurmonline.womconverter.converters.ConversionOptions;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent manifest of converted files kept in the output directory. Each input is stored
+ * with a key built from its content hash, the converter options and the tool version, and
+ * a conversion may be skipped when the key did not change and all output files, including levels
+ * of detail, still exist. Entries are updated only after the converter finished without error.
+ * Only the input file itself is hashed; files it references, like OBJ material libraries
+ * or textures, are not tracked.
+ */
+public class ConversionCache {
+
+    public static final String MANIFEST_FILE_NAME = ".womconverter-cache";
+
+    private final File manifestFile;
+    private final String optionsKey;
+    private final Map<String, String> entries = new ConcurrentHashMap<>();
+
+    public ConversionCache(File outputDirectory, ConversionOptions options) throws IOException {
+        this.manifestFile = new File(outputDirectory, MANIFEST_FILE_NAME);
+        this.optionsKey = optionsKey(options);
+        if (manifestFile.isFile()) {
+            Properties manifest = new Properties();
+            try (InputStream in = new FileInputStream(manifestFile)) {
+                manifest.load(in);
+            }
+            manifest.forEach((file, key) -> entries.put((String) file, (String) key));
+        }
+    }
+
+    /**
+     * Computes the cache key of an input file for the current options and tool version.
+     */
+    public String key(File inputFile) throws IOException {
+        String contentHash = Files.asByteSource(inputFile).hash(Hashing.sha256()).toString();
+        return Hashing.sha256().newHasher()
+                .putString(optionsKey, StandardCharsets.UTF_8)
+                .putString(contentHash, StandardCharsets.UTF_8)
+                .hash().toString();
+    }
+
+    /**
+     * Whether the file was converted with the same key and all of its output files still exist.
+     */
+    public boolean isUpToDate(String file, String key, List<File> outputFiles) {
+        return key.equals(entries.get(file)) && outputFiles.stream().allMatch(File::isFile);
+    }
+
+    public void update(String file, String key) {
+        entries.put(file, key);
+    }
+
+    public void remove(String file) {
+        entries.remove(file);
+    }
+
+    /**
+     * Writes the manifest to a temporary file and moves it over the previous one.
+     */
+    public void save() throws IOException {
+        Properties manifest = new Properties();
+        manifest.putAll(new TreeMap<>(entries));
+        File tempFile = new File(manifestFile.getParentFile(), MANIFEST_FILE_NAME + ".tmp");
+        try (OutputStream out = new FileOutputStream(tempFile)) {
+            manifest.store(out, "WOM-Converter incremental conversion manifest");
+        }
+        java.nio.file.Files.move(tempFile.toPath(), manifestFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String optionsKey(ConversionOptions options) {
+        Hasher hasher = Hashing.sha256().newHasher()
+                .putString(toolVersion(), StandardCharsets.UTF_8)
+                .putBoolean(options.isGenerateTangents())
+                .putBoolean(options.isOptimize())
+                .putBoolean(options.isCompact())
+                .putBoolean(options.isCompress())
+                .putBoolean(options.isExportSkins());
+        for (float ratio : options.getLodRatios()) {
+            hasher.putFloat(ratio);
+        }
+        options.getForceMats().getEntries().forEach((texture, material) -> hasher
+                .putString(texture, StandardCharsets.UTF_8).putByte((byte) 0)
+                .putString(material, StandardCharsets.UTF_8).putByte((byte) 0));
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Version of the converter taken from the jar manifest, or "development" when running from classes.
+     */
+    public static String toolVersion() {
+        String version = ConversionCache.class.getPackage().getImplementationVersion();
+        return version != null ? version : "development";
+    }
+}
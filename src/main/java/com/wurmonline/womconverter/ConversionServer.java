@@ -0,0 +1,213 @@
+package com.wurmonline.womconverter;
+
+import com.google.common.util.concurrent.Striped;
+import com.wurmonline.womconverter.converters.ConversionOptions;
+import com.wurmonline.womconverter.events.ConversionListener;
+import com.wurmonline.womconverter.events.FileMetrics;
+import com.wurmonline.womconverter.events.Json;
+import org.lwjgl.assimp.Assimp;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Keeps the converter and the Assimp native library loaded and converts files on request.
+ * Requests and responses are JSON objects, one per line, read from standard input or from
+ * connections to a loopback port. A request names the {@code input} file and optionally the
+ * {@code outdir}, which defaults to the directory of the input, and an {@code id} that is copied to
+ * the response. Requests are converted concurrently and answered as they finish, so responses
+ * may come in a different order. Requests for the same output file are converted one at a time.
+ * <p>
+ * A response has the {@code status} ok or failed, the output file, the time taken, the metrics of
+ * the conversion, and the {@code warnings} and {@code errors} reported while converting.
+ */
+public class ConversionServer {
+
+    /**
+     * Collects the results of a single request.
+     */
+    private static class RequestListener implements ConversionListener {
+        final List<String> warnings = new ArrayList<>();
+        final List<String> errors = new ArrayList<>();
+        File outputFile = null;
+        FileMetrics metrics = null;
+
+        @Override
+        public synchronized void meshSplit(File inputFile, String meshName, int partsCount) {
+            warnings.add("Mesh " + meshName + " has too many vertices and was split into " + partsCount + " meshes");
+        }
+
+        @Override
+        public synchronized void fileFinished(File inputFile, File outputFile, FileMetrics metrics) {
+            this.outputFile = outputFile;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public synchronized void error(File inputFile, String message, Throwable cause) {
+            errors.add(message);
+        }
+    }
+
+    private final BatchConverter converter;
+    private final ForkJoinPool pool;
+    private final Striped<Lock> outputLocks = Striped.lock(64);
+    private ConversionListener listener = ConversionListener.QUIET;
+
+    public ConversionServer(ConversionOptions options, int threads) {
+        this.converter = new BatchConverter(options, threads);
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Additional listener receiving the events of all requests, for logging.
+     */
+    public void setListener(ConversionListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Serves requests read from the input until it ends, then waits for the pending responses.
+     * The streams are left open.
+     */
+    public void serve(InputStream in, OutputStream out) throws IOException {
+        loadNatives();
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        Phaser pending = new Phaser(1);
+        // closing the reader would close a socket before the responses are written
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) continue;
+                String request = line;
+                pending.register();
+                pool.execute(() -> {
+                    try {
+                        String response = handle(request);
+                        synchronized (writer) {
+                            writer.println(response);
+                            writer.flush();
+                        }
+                    } finally {
+                        pending.arriveAndDeregister();
+                    }
+                });
+            }
+        } finally {
+            pending.arriveAndAwaitAdvance();
+        }
+    }
+
+    /**
+     * Accepts connections on the loopback port until the process ends, serving each of them like {@link #serve}.
+     */
+    public void listen(int port) throws IOException {
+        loadNatives();
+        try (ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            while (true) {
+                Socket socket = serverSocket.accept();
+                Thread connection = new Thread(() -> {
+                    try (Socket client = socket) {
+                        serve(client.getInputStream(), client.getOutputStream());
+                    } catch (IOException e) {
+                        listener.error(new File(""), "Connection failed: " + e, e);
+                    }
+                }, "conversion-connection-" + socket.getPort());
+                connection.setDaemon(true);
+                connection.start();
+            }
+        }
+    }
+
+    /**
+     * Converts the file of a single request line and returns the response line.
+     */
+    String handle(String line) {
+        long start = System.nanoTime();
+        Map<String, Object> request;
+        try {
+            request = Json.parseObject(line);
+        } catch (IllegalArgumentException e) {
+            return failure(null, "Invalid request: " + e.getMessage());
+        }
+        Object id = request.get("id");
+        Object input = request.get("input");
+        Object outputDirectory = request.get("outdir");
+        if (!(input instanceof String)) {
+            return failure(id, "Missing input file");
+        } else if (outputDirectory != null && !(outputDirectory instanceof String)) {
+            return failure(id, "Output directory must be a string");
+        }
+        File inputFile = new File((String) input).getAbsoluteFile();
+        File outputDirectoryFile = outputDirectory != null ? new File((String) outputDirectory).getAbsoluteFile() : inputFile.getParentFile();
+        if (!inputFile.isFile()) {
+            return failure(id, "Input file not found: " + input);
+        } else if (!outputDirectoryFile.isDirectory()) {
+            return failure(id, "Output directory is not a directory: " + outputDirectoryFile.getPath());
+        }
+
+        RequestListener result = new RequestListener();
+        Lock lock = outputLocks.get(BatchConverter.outputFileFor(inputFile, outputDirectoryFile));
+        lock.lock();
+        try {
+            converter.convertFile(inputFile, outputDirectoryFile, ConversionListener.broadcast(listener, result));
+        } finally {
+            lock.unlock();
+        }
+
+        StringBuilder sb = new StringBuilder(512);
+        Json.appendValue(sb.append("{\"id\":"), id);
+        boolean failed = !result.errors.isEmpty() || result.metrics == null;
+        sb.append(",\"status\":\"").append(failed ? "failed" : "ok").append('"');
+        Json.appendString(sb.append(",\"input\":"), inputFile.getPath());
+        Json.appendString(sb.append(",\"output\":"), result.outputFile != null ? result.outputFile.getPath() : null);
+        sb.append(",\"nanos\":").append(System.nanoTime() - start);
+        if (result.metrics != null) {
+            Json.appendMetrics(sb, result.metrics);
+        }
+        appendMessages(sb.append(",\"warnings\":"), result.warnings);
+        appendMessages(sb.append(",\"errors\":"), result.errors);
+        return sb.append('}').toString();
+    }
+
+    private static String failure(Object id, String message) {
+        StringBuilder sb = new StringBuilder(128);
+        Json.appendValue(sb.append("{\"id\":"), id);
+        sb.append(",\"status\":\"failed\",\"warnings\":[]");
+        Json.appendString(sb.append(",\"errors\":["), message);
+        return sb.append("]}").toString();
+    }
+
+    private static void appendMessages(StringBuilder sb, List<String> messages) {
+        sb.append('[');
+        for (int i = 0; i < messages.size(); i++) {
+            if (i > 0) sb.append(',');
+            Json.appendString(sb, messages.get(i));
+        }
+        sb.append(']');
+    }
+
+    /**
+     * Loads the Assimp native library up front, so the first request does not pay for it.
+     */
+    private static void loadNatives() {
+        Assimp.aiGetVersionMajor();
+    }
+}
@@ -0,0 +1,221 @@
+package com.wurmonline.womconverter;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.wurmonline.womconverter.events.ConversionListener;
+import com.wurmonline.womconverter.events.Json;
+import com.wurmonline.womconverter.io.WomWriter;
+import com.wurmonline.womconverter.model.Material;
+import com.wurmonline.womconverter.model.Mesh;
+import com.wurmonline.womconverter.model.Skin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Content-addressed index of the meshes and materials written by a batch. Meshes are keyed by a
+ * SHA-256 of their vertex, index and skin data, ignoring the mesh name, and materials by a SHA-256 of their
+ * WOM material record. Floats are normalized so that -0 and 0, and all NaNs, hash the same.
+ * Assets written more than once are listed in a text report and in a shared-asset manifest.
+ */
+public class DedupIndex implements ConversionListener {
+
+    private static class Asset {
+        final String hash;
+        final String description;
+        /**
+         * Size of the asset in the plain WOM layout.
+         */
+        final long bytes;
+        final List<String> uses = new ArrayList<>();
+
+        Asset(String hash, String description, long bytes) {
+            this.hash = hash;
+            this.description = description;
+            this.bytes = bytes;
+        }
+
+        /**
+         * Bytes that would not have to be shipped if the asset were stored once.
+         */
+        long getRepeatedBytes() {
+            return (uses.size() - 1) * bytes;
+        }
+    }
+
+    private final Map<String, Asset> meshes = new HashMap<>();
+    private final Map<String, Asset> materials = new HashMap<>();
+
+    @Override
+    public void meshWritten(File inputFile, File outputFile, Mesh mesh) {
+        String meshHash = hashMesh(mesh);
+        long meshBytes = (long) mesh.getVerticesCount() * WomWriter.vertexSize(mesh.hasVertexColor(), mesh.hasTangents(), mesh.hasBinormal()) * 4
+                + mesh.getIndices().length * 2L;
+        String use = outputFile.getPath() + "#" + mesh.getName();
+        Material[] meshMaterials = mesh.getMaterials();
+        String[] materialHashes = new String[meshMaterials.length];
+        for (int i = 0; i < meshMaterials.length; i++) {
+            materialHashes[i] = hashMaterial(meshMaterials[i]);
+        }
+        synchronized (this) {
+            meshes.computeIfAbsent(meshHash, hash -> new Asset(hash, mesh.getVerticesCount() + " vertices, " + mesh.getTrianglesCount() + " triangles", meshBytes)).uses.add(use);
+            for (int i = 0; i < meshMaterials.length; i++) {
+                Material material = meshMaterials[i];
+                materials.computeIfAbsent(materialHashes[i], hash -> new Asset(hash, material.getMaterialName() + " -> " + material.getTextureName(), materialBytes(material))).uses.add(use);
+            }
+        }
+    }
+
+    public synchronized void printSummary(PrintStream out) {
+        out.println("Duplicate meshes: " + duplicates(meshes).size() + " of " + meshes.size() + ", repeated bytes: " + repeatedBytes(meshes)
+                + "; duplicate materials: " + duplicates(materials).size() + " of " + materials.size() + ", repeated bytes: " + repeatedBytes(materials));
+    }
+
+    /**
+     * Lists every asset written more than once with all of its uses, largest savings first.
+     */
+    public synchronized void writeReport(File file) throws IOException {
+        String nl = System.lineSeparator();
+        StringBuilder sb = new StringBuilder(4096);
+        appendReport(sb.append("Meshes").append(nl), duplicates(meshes), nl);
+        appendReport(sb.append("Materials").append(nl), duplicates(materials), nl);
+        try (Writer out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            out.append(sb);
+        }
+    }
+
+    /**
+     * Writes the assets written more than once as a JSON document, so they can be shipped once and referenced by hash.
+     */
+    public synchronized void writeManifest(File file) throws IOException {
+        StringBuilder sb = new StringBuilder(4096);
+        appendManifest(sb.append("{\"meshes\":["), duplicates(meshes));
+        appendManifest(sb.append("],\n\"materials\":["), duplicates(materials));
+        sb.append("]}\n");
+        try (Writer out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            out.append(sb);
+        }
+    }
+
+    private static void appendReport(StringBuilder sb, List<Asset> assets, String nl) {
+        for (Asset asset : assets) {
+            sb.append("- ").append(asset.hash).append(", ").append(asset.description)
+              .append(", ").append(asset.bytes).append(" bytes x ").append(asset.uses.size()).append(nl);
+            for (String use : asset.uses) {
+                sb.append("  ").append(use).append(nl);
+            }
+        }
+    }
+
+    private static void appendManifest(StringBuilder sb, List<Asset> assets) {
+        for (int i = 0; i < assets.size(); i++) {
+            Asset asset = assets.get(i);
+            if (i > 0) sb.append(',');
+            Json.appendString(sb.append("\n{\"hash\":"), asset.hash);
+            Json.appendString(sb.append(",\"description\":"), asset.description);
+            sb.append(",\"bytes\":").append(asset.bytes);
+            sb.append(",\"repeatedBytes\":").append(asset.getRepeatedBytes());
+            sb.append(",\"uses\":[");
+            for (int j = 0; j < asset.uses.size(); j++) {
+                if (j > 0) sb.append(',');
+                Json.appendString(sb, asset.uses.get(j));
+            }
+            sb.append("]}");
+        }
+    }
+
+    /**
+     * Assets used more than once, largest savings first, with uses sorted so the output does not depend on the threads count.
+     */
+    private static List<Asset> duplicates(Map<String, Asset> assets) {
+        List<Asset> duplicates = new ArrayList<>();
+        for (Asset asset : assets.values()) {
+            if (asset.uses.size() > 1) {
+                asset.uses.sort(Comparator.naturalOrder());
+                duplicates.add(asset);
+            }
+        }
+        duplicates.sort(Comparator.comparingLong(Asset::getRepeatedBytes).reversed().thenComparing(asset -> asset.hash));
+        return duplicates;
+    }
+
+    private static long repeatedBytes(Map<String, Asset> assets) {
+        long repeated = 0;
+        for (Asset asset : assets.values()) {
+            repeated += asset.getRepeatedBytes();
+        }
+        return repeated;
+    }
+
+    private static String hashMesh(Mesh mesh) {
+        Hasher hasher = Hashing.sha256().newHasher()
+                .putBoolean(mesh.hasTangents())
+                .putBoolean(mesh.hasBinormal())
+                .putBoolean(mesh.hasVertexColor())
+                .putInt(mesh.getVerticesCount());
+        putFloats(hasher, mesh.getPositions());
+        putFloats(hasher, mesh.getNormals());
+        putFloats(hasher, mesh.getUvs());
+        if (mesh.hasVertexColor()) putFloats(hasher, mesh.getColors());
+        if (mesh.hasTangents()) putFloats(hasher, mesh.getTangents());
+        if (mesh.hasBinormal()) putFloats(hasher, mesh.getBinormals());
+        hasher.putInt(mesh.getIndices().length);
+        for (int index : mesh.getIndices()) {
+            hasher.putInt(index);
+        }
+        hasher.putBoolean(mesh.hasSkinning());
+        if (mesh.hasSkinning()) {
+            Skin skin = mesh.getSkin();
+            for (int offset : skin.getOffsets()) {
+                hasher.putInt(offset);
+            }
+            for (int joint : skin.getJoints()) {
+                hasher.putInt(joint);
+            }
+            putFloats(hasher, skin.getWeights());
+        }
+        return hasher.hash().toString();
+    }
+
+    private static String hashMaterial(Material material) {
+        Hasher hasher = Hashing.sha256().newHasher()
+                .putString(material.getTextureName(), StandardCharsets.UTF_8).putByte((byte) 0)
+                .putString(material.getMaterialName(), StandardCharsets.UTF_8).putByte((byte) 0);
+        putFloats(hasher, material.getEmissive());
+        hasher.putInt(normalize(material.getShininess()));
+        putFloats(hasher, material.getSpecular());
+        putFloats(hasher, material.getTransparency());
+        return hasher.hash().toString();
+    }
+
+    private static void putFloats(Hasher hasher, float[] values) {
+        for (float value : values) {
+            hasher.putInt(normalize(value));
+        }
+    }
+
+    /**
+     * Bits of the float with -0 turned into 0 and NaNs collapsed into one value.
+     */
+    private static int normalize(float value) {
+        return Float.floatToIntBits(value + 0.0f);
+    }
+
+    /**
+     * Size of the material record as {@link WomWriter#writeMaterial(Material)} writes it.
+     */
+    private static long materialBytes(Material material) {
+        return 4 + material.getTextureName().getBytes(StandardCharsets.UTF_8).length
+                + 4 + material.getMaterialName().getBytes(StandardCharsets.UTF_8).length
+                + 1 + (1 + 16) + (1 + 4) + (1 + 16) + (1 + 16);
+    }
+}
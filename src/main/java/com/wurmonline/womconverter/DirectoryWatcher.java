@@ -0,0 +1,168 @@
+package com.wurmonline.womconverter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Watches the input directory of a batch and reconverts files as they are saved.
+ * Events of a file are coalesced and the file is converted once it has not changed for the
+ * debounce delay, so an editor writing a model in several steps triggers a single conversion.
+ * Files due at the same time are converted together on the batch pool. Files are filtered and
+ * mapped to output directories like {@link BatchConverter#convertFiles(File, File, Pattern, boolean)} does.
+ * Temporary {@code .part} files of the converters are ignored, and so is the output directory when it is
+ * inside the watched tree, so written outputs do not trigger conversions again.
+ */
+public class DirectoryWatcher {
+
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 500;
+
+    /**
+     * Called after every round of conversions, for example to save the incremental conversion manifest.
+     */
+    public interface RoundListener {
+        void converted(List<BatchConverter.Job> jobs) throws IOException;
+    }
+
+    private final BatchConverter batch;
+    private final File inputDirectory;
+    private final File outputDirectory;
+    /**
+     * Output directory when it is a subdirectory of the input directory, otherwise null.
+     */
+    private final Path ignoredDirectory;
+    private final Pattern pattern;
+    private final boolean recursive;
+    private final long debounceNanos;
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    /**
+     * Changed files with the time of their last event.
+     */
+    private final Map<Path, Long> pending = new HashMap<>();
+
+    public DirectoryWatcher(BatchConverter batch, File inputDirectory, File outputDirectory, Pattern pattern, boolean recursive, long debounceMillis) {
+        this.batch = batch;
+        this.inputDirectory = inputDirectory;
+        this.outputDirectory = outputDirectory;
+        Path inputRoot = inputDirectory.toPath().toAbsolutePath().normalize();
+        Path outputRoot = outputDirectory.toPath().toAbsolutePath().normalize();
+        this.ignoredDirectory = outputRoot.startsWith(inputRoot) && !outputRoot.equals(inputRoot) ? outputRoot : null;
+        this.pattern = pattern;
+        this.recursive = recursive;
+        this.debounceNanos = TimeUnit.MILLISECONDS.toNanos(debounceMillis);
+    }
+
+    /**
+     * Watches until the thread is interrupted.
+     */
+    public void watch(RoundListener roundListener) throws IOException, InterruptedException {
+        try (WatchService service = FileSystems.getDefault().newWatchService()) {
+            register(service, inputDirectory.toPath());
+            while (true) {
+                WatchKey key;
+                if (pending.isEmpty()) {
+                    key = service.take();
+                } else {
+                    long wait = pending.values().stream().mapToLong(Long::longValue).min().getAsLong() + debounceNanos - System.nanoTime();
+                    key = service.poll(Math.max(wait, 0), TimeUnit.NANOSECONDS);
+                }
+                // take all queued events before looking for files that are due
+                while (key != null) {
+                    processEvents(service, key);
+                    key = service.poll();
+                }
+
+                List<File> due = new ArrayList<>();
+                long now = System.nanoTime();
+                for (Iterator<Map.Entry<Path, Long>> it = pending.entrySet().iterator(); it.hasNext(); ) {
+                    Map.Entry<Path, Long> entry = it.next();
+                    if (now - entry.getValue() >= debounceNanos) {
+                        it.remove();
+                        if (Files.isRegularFile(entry.getKey())) {
+                            due.add(entry.getKey().toFile());
+                        }
+                    }
+                }
+                if (!due.isEmpty()) {
+                    due.sort(null);
+                    roundListener.converted(batch.convertFiles(inputDirectory, outputDirectory, due));
+                }
+            }
+        }
+    }
+
+    private void processEvents(WatchService service, WatchKey key) throws IOException {
+        Path directory = directories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // events were lost, look at every file again
+                scan(inputDirectory.toPath());
+                continue;
+            }
+            if (directory == null) continue;
+            Path path = directory.resolve((Path) event.context());
+            if (isIgnored(path)) continue;
+            if (Files.isDirectory(path)) {
+                if (recursive && event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                    // files may have been written before the directory was registered
+                    register(service, path);
+                    scan(path);
+                }
+            } else if (matches(path)) {
+                pending.put(path, System.nanoTime());
+            }
+        }
+        if (!key.reset()) {
+            directories.remove(key);
+        }
+    }
+
+    private void register(WatchService service, Path directory) throws IOException {
+        WatchKey key = directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        directories.put(key, directory);
+        if (recursive) {
+            try (Stream<Path> children = Files.list(directory)) {
+                for (Path child : (Iterable<Path>) children::iterator) {
+                    if (Files.isDirectory(child) && !isIgnored(child) && !directories.containsValue(child)) {
+                        register(service, child);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks all matching files of the directory, and of its subdirectories when recursive, as changed.
+     */
+    private void scan(Path directory) throws IOException {
+        try (Stream<Path> files = recursive ? Files.walk(directory) : Files.list(directory)) {
+            long now = System.nanoTime();
+            files.filter(path -> Files.isRegularFile(path) && !isIgnored(path) && matches(path)).forEach(path -> pending.put(path, now));
+        }
+    }
+
+    private boolean isIgnored(Path path) {
+        if (path.getFileName().toString().endsWith(".part")) {
+            return true;
+        }
+        return ignoredDirectory != null && path.toAbsolutePath().normalize().startsWith(ignoredDirectory);
+    }
+
+    private boolean matches(Path path) {
+        return pattern.matcher(path.getFileName().toString()).matches();
+    }
+}
@@ -1,19 +1,29 @@
 package com.wurmonline.womconverter;
 
 import com.wurmonline.womconverter.converters.AssimpToWOMConverter;
-import com.wurmonline.womconverter.converters.WOMToDAEConverter;
+import com.wurmonline.womconverter.converters.ConversionOptions;
+import com.wurmonline.womconverter.converters.ForceMats;
+import com.wurmonline.womconverter.events.ConsoleListener;
+import com.wurmonline.womconverter.events.ConversionListener;
+import com.wurmonline.womconverter.events.JsonLinesListener;
+import com.wurmonline.womconverter.io.WomInspector;
+import com.wurmonline.womconverter.io.WomReport;
 import javafx.application.Application;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-import java.util.regex.Matcher;
+import java.util.concurrent.ForkJoinPool;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 
 public class Main extends Application {
@@ -21,14 +31,30 @@ public class Main extends Application {
     public static void main(String[] args) {
         if (args.length==0 || (args.length==1 && args[0].equalsIgnoreCase("-h"))) {
             System.out.println("Usage:");
-            System.out.println("java -jar WOM_Converter.jar [-generatetangents] [-recursive] [-indir input_directory] [-outdir output_directory] input_files_regex");
+            System.out.println("java -jar WOM_Converter.jar [-generatetangents] [-optimize] [-compact] [-compress] [-skin] [-lod ratios] [-recursive] [-incremental] [-watch] [-threads count] [-log mode] [-logfile file] [-metrics file] [-dedupreport file] [-dedupmanifest file] [-server stdio|port] [-inspect] [-indir input_directory] [-outdir output_directory] input_files_regex");
             System.out.println("Options:");
             System.out.println("-generatetangents : automatically generate tangent and binormal values if they aren't present in input files. Default: off.");
+            System.out.println("-optimize : reorder triangles and vertices of each mesh for GPU vertex cache and fetch locality, drawing outer triangle clusters first to reduce overdraw, and report ACMR before and after. Default: off.");
+            System.out.println("-compact : write quantized WOM files with 16-bit positions, normals, tangents and UVs, reporting the largest error of each mesh. Default: off.");
+            System.out.println("-compress : write WOM files as containers of independently deflated mesh blocks, compressed in parallel. Read transparently when converting WOM to DAE. Default: off.");
+            System.out.println("-skin : experimental, also write joints and per-vertex skin weights of rigged models. The layout of the skinning trailer has not been checked against the game client yet, so only use it for testing. Default: off, joints and skins are not written.");
+            System.out.println("-lod ratios : also write simplified variants model_lod1.wom, model_lod2.wom... keeping given comma separated fractions of triangles, e.g. 0.5,0.25. Default: none.");
             System.out.println("-recursive : export files recursively in all subfolders relative to input directory, will create output directory folders accordingly. Default: off.");
+            System.out.println("-incremental : skip files unchanged since the previous run, tracked in a "+ConversionCache.MANIFEST_FILE_NAME+" manifest in the output directory. Default: off.");
+            System.out.println("-watch : after converting, keep watching the input directory (and its subfolders with -recursive) and convert matching files again when they are saved, "+DirectoryWatcher.DEFAULT_DEBOUNCE_MILLIS+" ms after their last change. Default: off.");
+            System.out.println("-threads count : number of files converted in parallel. Default: number of available processors.");
+            System.out.println("-log mode : console prints converted files and errors, verbose also every mesh and material, quiet prints only the summary, json writes every event as a JSON line. Default: console.");
+            System.out.println("-logfile <file> : write the log to given file instead of the console");
+            System.out.println("-metrics <file> : write per-file and aggregate stage timings, vertex counts and sizes to given JSON file");
+            System.out.println("-dedupreport <file> : write meshes and materials written more than once in the batch, found by hashing their data, to given file. Files skipped by -incremental are not indexed.");
+            System.out.println("-dedupmanifest <file> : write the assets written more than once as a JSON shared-asset manifest to given file");
+            System.out.println("-server stdio|port : keep running and convert files requested as JSON lines like {\"id\":1,\"input\":\"model.dae\",\"outdir\":\"out\"} on standard input or on given loopback port, answering with a JSON line per request. The input regex is not used.");
+            System.out.println("-inspect : instead of converting, check the structure of matching WOM files (truncation, counts, index bounds, NaN and infinite values) without decoding their meshes and print a summary of each mesh. Exits with status 1 if any file is invalid. With -log quiet only invalid files are listed.");
             System.out.println("-indir input_directory : look for input files in input_directory. Must be a directory. Default: current dir.");
             System.out.println("-outdir output_directory : output directory for output files. Must be a directory. Default: current dir.");
             System.out.println("-matreport <file> : reports materials and textures used in each model to given file");
-            System.out.println("-forcemats <file> : load overrides for material names based on texture file");
+            System.out.println("-nativereport : after each file, report the resident memory of the process and its growth since the start of the batch (Linux only), with the Java heap and the size of the imported scene. Once the heap has settled, growth should stay flat over a batch.");
+            System.out.println("-forcemats <file> : load overrides for material names based on texture file. Keys are texture file names, glob patterns (*, ?, [...]) or regular expressions between slashes (/.../). Exact names win over patterns, which are tried in file order.");
             System.out.println("input_files_regex : regex used to lookup the input files to convert.");
             System.out.println("Examples:");
             System.out.println("java -jar WOM_Converter.jar -generatetangents .+dae");
@@ -39,11 +65,27 @@ public class Main extends Application {
         }
 
         boolean generateTangents = false;
+        boolean optimize = false;
+        boolean compact = false;
+        boolean compress = false;
+        boolean skin = false;
+        String lod = null;
         boolean recursive = false;
+        boolean incremental = false;
+        boolean watch = false;
+        int threads = Runtime.getRuntime().availableProcessors();
         String inputDirectory = ".";
         String outputDirectory = ".";
         File forceMatsFile = null;
         File matReportFile = null;
+        boolean nativeReport = false;
+        String logMode = "console";
+        File logFile = null;
+        File metricsFile = null;
+        File dedupReportFile = null;
+        File dedupManifestFile = null;
+        String server = null;
+        boolean inspect = false;
 
         for(int i=0; i<args.length; ++i) {
             String arg = args[i];
@@ -54,9 +96,62 @@ public class Main extends Application {
                 case "-generatetangents":
                     generateTangents = true;
                     break;
+                case "-optimize":
+                    optimize = true;
+                    break;
+                case "-compact":
+                    compact = true;
+                    break;
+                case "-compress":
+                    compress = true;
+                    break;
+                case "-skin":
+                    skin = true;
+                    break;
+                case "-lod":
+                    i++;
+                    lod = args[i];
+                    break;
                 case "-recursive":
                     recursive = true;
                     break;
+                case "-incremental":
+                    incremental = true;
+                    break;
+                case "-watch":
+                    watch = true;
+                    break;
+                case "-threads":
+                    i++;
+                    threads = Integer.parseInt(args[i]);
+                    break;
+                case "-log":
+                    i++;
+                    logMode = args[i];
+                    break;
+                case "-logfile":
+                    i++;
+                    logFile = new File(args[i]);
+                    break;
+                case "-metrics":
+                    i++;
+                    metricsFile = new File(args[i]);
+                    break;
+                case "-dedupreport":
+                    i++;
+                    dedupReportFile = new File(args[i]);
+                    break;
+                case "-dedupmanifest":
+                    i++;
+                    dedupManifestFile = new File(args[i]);
+                    break;
+                case "-server":
+                    i++;
+                    server = args[i];
+                    break;
+                case "-inspect":
+                    inspect = true;
+                    break;
                 case "-indir":
                     i++;
                     inputDirectory = args[i];
@@ -69,6 +164,9 @@ public class Main extends Application {
                     i++;
                     forceMatsFile = new File(args[i]);
                     break;
+                case "-nativereport":
+                    nativeReport = true;
+                    break;
                 case "-matreport":
                     i++;
                     matReportFile = new File(args[i]);
@@ -76,66 +174,257 @@ public class Main extends Application {
             }
         }
 
+        ForceMats forceMats = ForceMats.EMPTY;
+        if(forceMatsFile!=null) {
+            try {
+                forceMats = ForceMats.load(forceMatsFile);
+            } catch(IOException e) {
+                throw new RuntimeException("Error reading forcemats file", e);
+            } catch(IllegalArgumentException e) {
+                System.err.println(e.getMessage());
+                return;
+            }
+        }
+
+        if(threads<1) {
+            System.err.println("Threads count must be at least 1: "+threads);
+            return;
+        }
+
+        float[] lodRatios = new float[0];
+        if(lod!=null) {
+            String[] ratios = lod.split(",");
+            lodRatios = new float[ratios.length];
+            boolean valid = true;
+            for(int j=0; j<ratios.length && valid; ++j) {
+                try {
+                    lodRatios[j] = Float.parseFloat(ratios[j].trim());
+                    valid = lodRatios[j]>0 && lodRatios[j]<1;
+                } catch(NumberFormatException e) {
+                    valid = false;
+                }
+            }
+            if(!valid) {
+                System.err.println("LOD ratios must be comma separated numbers between 0 and 1: "+lod);
+                return;
+            }
+        }
+
+        if(!logMode.equals("console") && !logMode.equals("verbose") && !logMode.equals("quiet") && !logMode.equals("json")) {
+            System.err.println("Unknown log mode: "+logMode);
+            return;
+        }
+
+        int serverPort = 0;
+        if(server!=null && !server.equals("stdio")) {
+            try {
+                serverPort = Integer.parseInt(server);
+            } catch(NumberFormatException e) {
+                serverPort = -1;
+            }
+            if(serverPort<1 || serverPort>65535) {
+                System.err.println("Server must be stdio or a port between 1 and 65535: "+server);
+                return;
+            }
+        }
+
+        ConversionOptions options = new ConversionOptions();
+        options.setGenerateTangents(generateTangents);
+        options.setForceMats(forceMats);
+        options.setOptimize(optimize);
+        options.setCompact(compact);
+        options.setCompress(compress);
+        options.setExportSkins(skin);
+        options.setLodRatios(lodRatios);
+
+        if(server!=null) {
+            runServer(serverPort,options,threads,logMode,logFile);
+            return;
+        }
+
         String inputRegex = args[args.length-1];
         File inputDirectoryFile = new File(inputDirectory);
         if(!inputDirectoryFile.isDirectory()) {
             System.err.println("Input directory is not a valid directory: "+inputDirectory);
             return;
         }
+        if(inspect) {
+            System.exit(inspectFiles(inputDirectoryFile,Pattern.compile(inputRegex),recursive,threads,logMode.equals("quiet")) ? 0 : 1);
+        }
         File outputDirectoryFile = new File(outputDirectory);
         if(!outputDirectoryFile.isDirectory()) {
             System.err.println("Output directory is not a valid directory: "+outputDirectory);
             return;
         }
 
-        Properties forceMats = new Properties();
-        if(forceMatsFile!=null) {
-            try(FileInputStream in = new FileInputStream(forceMatsFile)) {
-                forceMats.load(in);
-            } catch(IOException e) {
-                throw new RuntimeException("Error reading forcemats file", e);
-            }
-        }
-
         MatReporter matReport = null;
+        PrintStream log = null;
+        List<BatchConverter.Job> failed = new ArrayList<>();
         try {
             if(matReportFile!=null) {
                 matReport = new MatReporter(matReportFile);
             }
+            if(logFile!=null) {
+                log = new PrintStream(logFile,"UTF-8");
+            }
             Pattern pattern = Pattern.compile(inputRegex);
-            convertFiles(inputDirectoryFile,outputDirectoryFile,pattern,recursive,generateTangents,forceMats,matReport);
-        } catch(IOException ex) {
-            Logger.getLogger(Main.class.getName()).log(Level.SEVERE,null,ex);
+            BatchConverter batch = new BatchConverter(options,threads);
+            batch.setMatReport(matReport);
+            MetricsReporter metrics = new MetricsReporter();
+            DedupIndex dedup = dedupReportFile!=null || dedupManifestFile!=null ? new DedupIndex() : null;
+            ConversionListener listener = ConversionListener.broadcast(createListener(logMode,log),metrics);
+            batch.setListener(dedup!=null ? ConversionListener.broadcast(listener,dedup) : listener);
+            if(nativeReport) batch.setNativeReport(new NativeMemoryReporter());
+            ConversionCache cache = null;
+            if(incremental) {
+                cache = new ConversionCache(outputDirectoryFile,options);
+                batch.setCache(cache);
+            }
+            // keep the standard output parseable when it carries the JSON lines
+            PrintStream summary = logMode.equals("json") && log==null ? System.err : System.out;
+            failed = convertFiles(batch,inputDirectoryFile,outputDirectoryFile,pattern,recursive,summary);
+            metrics.printSummary(summary);
+            if(metricsFile!=null) metrics.writeMetrics(metricsFile);
+            if(dedup!=null) {
+                dedup.printSummary(summary);
+                if(dedupReportFile!=null) dedup.writeReport(dedupReportFile);
+                if(dedupManifestFile!=null) dedup.writeManifest(dedupManifestFile);
+            }
+            if(cache!=null) cache.save();
+            if(watch) {
+                summary.println("Watching "+inputDirectoryFile.getPath()+" for changes");
+                watchFiles(batch,inputDirectoryFile,outputDirectoryFile,pattern,recursive,cache,matReport);
+            }
+        } catch(IOException e) {
+            throw new RuntimeException("Error writing log, metrics, deduplication report or incremental conversion manifest", e);
         } finally {
             if(matReport!=null) matReport.close();
+            if(log!=null) log.close();
         }
 
-        System.exit(0);
+        System.exit(failed.isEmpty() ? 0 : 1);
     }
 
-    private static void convertFiles(File inputDirectory,File outputDirectory,Pattern pattern,boolean recursive,boolean generateTangents,Properties forceMats,MatReporter matReport) throws IOException {
-        File[] filteredFiles = inputDirectory.listFiles(file -> {
-            if(file.isDirectory()) return false;
-            Matcher matcher = pattern.matcher(file.getName());
-            return matcher.matches();
-        });
-        for(File file : filteredFiles) {
-            String fn = file.getName().toLowerCase();
-            if(fn.endsWith(".wom")) {
-                WOMToDAEConverter.convert(file,outputDirectory,generateTangents,forceMats,matReport);
+    /**
+     * Converts changed files until the process is stopped, saving the incremental conversion manifest after every round.
+     */
+    private static void watchFiles(BatchConverter batch,File inputDirectory,File outputDirectory,Pattern pattern,boolean recursive,ConversionCache cache,MatReporter matReport) throws IOException {
+        DirectoryWatcher watcher = new DirectoryWatcher(batch,inputDirectory,outputDirectory,pattern,recursive,DirectoryWatcher.DEFAULT_DEBOUNCE_MILLIS);
+        try {
+            watcher.watch(jobs -> {
+                if(cache!=null) cache.save();
+                if(matReport!=null) matReport.flush();
+            });
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Serves conversion requests until standard input ends, or forever on a port, 0 meaning standard input. Events are
+     * only logged to a log file, as the standard output carries the responses.
+     */
+    private static void runServer(int port,ConversionOptions options,int threads,String logMode,File logFile) {
+        ConversionServer conversionServer = new ConversionServer(options,threads);
+        try(PrintStream log = logFile!=null ? new PrintStream(logFile,"UTF-8") : null) {
+            if(log!=null) conversionServer.setListener(createListener(logMode,log));
+            if(port==0) {
+                conversionServer.serve(System.in,System.out);
             } else {
-                AssimpToWOMConverter.convert(file,outputDirectory,generateTangents,forceMats,matReport);
+                conversionServer.listen(port);
             }
+        } catch(IOException e) {
+            throw new RuntimeException("Error serving conversion requests", e);
+        }
+    }
+
+    /**
+     * Inspects the matching files in parallel and prints their reports in file order. Returns whether all files are valid.
+     */
+    private static boolean inspectFiles(File inputDirectory,Pattern pattern,boolean recursive,int threads,boolean quiet) {
+        long start = System.nanoTime();
+        Path root = inputDirectory.toPath();
+        List<Path> files;
+        try(Stream<Path> paths = recursive ? Files.walk(root) : Files.list(root)) {
+            files = paths.filter(path -> Files.isRegularFile(path) && pattern.matcher(path.getFileName().toString()).matches()).sorted().collect(Collectors.toList());
+        } catch(IOException e) {
+            throw new RuntimeException("Error listing input files", e);
         }
-        if(recursive) {
-            File[] directories = inputDirectory.listFiles(File::isDirectory);
-            for(File directory : directories) {
-                String name = directory.getName();
-                File newInputDirectory = directory;
-                File newOutputDirectory = new File(outputDirectory,name);
-                convertFiles(newInputDirectory,newOutputDirectory,pattern,recursive,generateTangents,forceMats,matReport);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        List<WomReport> reports;
+        try {
+            reports = pool.submit(() -> files.parallelStream().map(path -> WomInspector.inspect(path.toFile())).collect(Collectors.toList())).join();
+        } finally {
+            pool.shutdown();
+        }
+
+        int invalid = 0;
+        long meshes = 0, vertices = 0, triangles = 0;
+        for(int i=0; i<files.size(); ++i) {
+            WomReport report = reports.get(i);
+            if(!report.isValid()) invalid++;
+            for(WomReport.MeshSummary mesh : report.getMeshes()) {
+                meshes++;
+                vertices += mesh.getVerticesCount();
+                triangles += mesh.getTrianglesCount();
             }
+            if(!quiet || !report.isValid()) printReport(root.relativize(files.get(i)).toString(),report);
+        }
+        System.out.println("------------------------------------------------------------------------");
+        System.out.println("Files inspected: "+files.size()+", valid: "+(files.size()-invalid)+", invalid: "+invalid+String.format(" (%.1f ms)",(System.nanoTime()-start)/1e6));
+        System.out.println("Meshes: "+meshes+", vertices: "+vertices+", triangles: "+triangles);
+        return invalid==0;
+    }
+
+    private static void printReport(String file,WomReport report) {
+        StringBuilder sb = new StringBuilder(256);
+        sb.append(file).append(report.isValid() ? ": valid, " : ": INVALID, ").append(report.getMeshes().size()).append(" meshes, ").append(report.getJointsCount()).append(" joints");
+        if(report.isCompact()) sb.append(", compact");
+        if(report.isCompressed()) sb.append(", compressed");
+        String nl = System.lineSeparator();
+        for(WomReport.MeshSummary mesh : report.getMeshes()) {
+            sb.append(nl).append("  ").append(mesh.getName()).append(": ").append(mesh.getVerticesCount()).append(" vertices, ").append(mesh.getTrianglesCount()).append(" triangles");
+            if(mesh.hasTangents()) sb.append(", tangents");
+            if(mesh.hasBinormal()) sb.append(", binormal");
+            if(mesh.hasVertexColor()) sb.append(", vertex color");
+            if(mesh.isSkinned()) sb.append(", skinned");
+            sb.append(", materials: ").append(String.join(", ",mesh.getMaterials()));
+        }
+        for(String problem : report.getProblems()) {
+            sb.append(nl).append("  problem: ").append(problem);
+        }
+        System.out.println(sb);
+    }
+
+    private static ConversionListener createListener(String logMode,PrintStream log) {
+        PrintStream out = log!=null ? log : System.out;
+        PrintStream err = log!=null ? log : System.err;
+        switch(logMode) {
+            case "verbose":
+                return new ConsoleListener(out,err,true);
+            case "quiet":
+                return ConversionListener.QUIET;
+            case "json":
+                return new JsonLinesListener(out);
+            default:
+                return new ConsoleListener(out,err,false);
+        }
+    }
+
+    private static List<BatchConverter.Job> convertFiles(BatchConverter batch,File inputDirectory,File outputDirectory,Pattern pattern,boolean recursive,PrintStream summary) {
+        List<BatchConverter.Job> jobs = batch.convertFiles(inputDirectory,outputDirectory,pattern,recursive);
+        List<BatchConverter.Job> failed = new ArrayList<>();
+        int skipped = 0;
+        for(BatchConverter.Job job : jobs) {
+            if(job.getError()!=null) failed.add(job);
+            if(job.isSkipped()) skipped++;
+        }
+        summary.println("------------------------------------------------------------------------");
+        summary.println("Files converted: "+(jobs.size()-failed.size()-skipped)+", unchanged: "+skipped+", failed: "+failed.size());
+        for(BatchConverter.Job job : failed) {
+            summary.println("Failed: "+job.getInputFile().getPath()+" - "+job.getError());
         }
+        return failed;
     }
 
     @Override
@@ -4,10 +4,21 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.PrintStream;
 import java.util.HashMap;
+import java.util.TreeMap;
 
+/**
+ * Collects materials used by converted files and writes them to a report file.
+ * Materials are gathered per thread, so several files may be converted concurrently.
+ * When files are registered with {@link #beginFile(int)}, their reports are written
+ * in the order of the given indices regardless of the order in which they finish.
+ */
 public class MatReporter implements AutoCloseable {
     private PrintStream output;
-    private HashMap<String, String> mats = new HashMap<>();
+    private final ThreadLocal<HashMap<String, String>> mats = ThreadLocal.withInitial(HashMap::new);
+    private final ThreadLocal<Integer> fileIndex = new ThreadLocal<>();
+    private final ThreadLocal<String> fileReport = new ThreadLocal<>();
+    private final TreeMap<Integer, String> pendingReports = new TreeMap<>();
+    private int nextIndex = 0;
 
     public MatReporter(File outFile) {
         try {
@@ -17,18 +28,55 @@ public class MatReporter implements AutoCloseable {
         }
     }
 
+    public void beginFile(int index) {
+        fileIndex.set(index);
+        fileReport.remove();
+        mats.get().clear();
+    }
+
     public void addMat(String mat, String file) {
-        mats.put(mat, file);
+        mats.get().put(mat, file);
     }
 
     public void reportFile(String file) {
-        output.println(file);
-        mats.forEach((m, f) -> output.println(String.format("- %s -> %s", m, f)));
-        mats.clear();
+        StringBuilder sb = new StringBuilder();
+        sb.append(file).append(System.lineSeparator());
+        HashMap<String, String> fileMats = mats.get();
+        fileMats.forEach((m, f) -> sb.append(String.format("- %s -> %s", m, f)).append(System.lineSeparator()));
+        fileMats.clear();
+        if (fileIndex.get() == null) {
+            synchronized (this) {
+                output.print(sb);
+            }
+        } else {
+            fileReport.set(sb.toString());
+        }
+    }
+
+    public void endFile() {
+        Integer index = fileIndex.get();
+        if (index == null) return;
+        String report = fileReport.get();
+        fileIndex.remove();
+        fileReport.remove();
+        mats.get().clear();
+        synchronized (this) {
+            pendingReports.put(index, report != null ? report : "");
+            while (pendingReports.containsKey(nextIndex)) {
+                output.print(pendingReports.remove(nextIndex));
+                nextIndex++;
+            }
+        }
+    }
+
+    public synchronized void flush() {
+        output.flush();
     }
 
     @Override
-    public void close() {
+    public synchronized void close() {
+        pendingReports.values().forEach(output::print);
+        pendingReports.clear();
         output.close();
     }
 }
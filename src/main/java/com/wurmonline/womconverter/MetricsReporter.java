@@ -0,0 +1,142 @@
+package com.wurmonline.womconverter;
+
+import com.wurmonline.womconverter.events.ConversionListener;
+import com.wurmonline.womconverter.events.FileMetrics;
+import com.wurmonline.womconverter.events.FileMetrics.Stage;
+import com.wurmonline.womconverter.events.Json;
+import com.wurmonline.womconverter.io.FloatFormatter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * Collects the metrics of every finished file and summarizes them at the end of a batch:
+ * total, median, 95th percentile and maximum time of each stage and of whole files, and the
+ * amount of data converted. The same numbers can be written to a JSON file.
+ */
+public class MetricsReporter implements ConversionListener {
+
+    private static class FileRecord {
+        final File inputFile;
+        final File outputFile;
+        final FileMetrics metrics;
+
+        FileRecord(File inputFile, File outputFile, FileMetrics metrics) {
+            this.inputFile = inputFile;
+            this.outputFile = outputFile;
+            this.metrics = metrics;
+        }
+    }
+
+    private final List<FileRecord> records = new ArrayList<>();
+
+    @Override
+    public synchronized void fileFinished(File inputFile, File outputFile, FileMetrics metrics) {
+        records.add(new FileRecord(inputFile, outputFile, metrics));
+    }
+
+    public synchronized void printSummary(PrintStream out) {
+        if (records.isEmpty()) return;
+        String nl = System.lineSeparator();
+        StringBuilder sb = new StringBuilder(1024);
+        sb.append(String.format("%-12s %12s %10s %10s %10s%n", "Stage [ms]", "total", "p50", "p95", "max"));
+        for (Stage stage : Stage.values()) {
+            appendRow(sb, stage.getLabel(), sorted(metrics -> metrics.getNanos(stage)));
+        }
+        appendRow(sb, "file", sorted(FileMetrics::getTotalNanos));
+        sb.append("Meshes: ").append(sum(metrics -> metrics.getMeshesCount()))
+          .append(", vertices: ").append(sum(FileMetrics::getVerticesCount))
+          .append(", triangles: ").append(sum(FileMetrics::getTrianglesCount))
+          .append(", bytes in: ").append(sum(FileMetrics::getBytesIn))
+          .append(", bytes out: ").append(sum(FileMetrics::getBytesOut)).append(nl);
+        out.print(sb);
+    }
+
+    /**
+     * Writes per-file metrics and the aggregates of the summary as a JSON document. Times are in nanoseconds.
+     */
+    public synchronized void writeMetrics(File file) throws IOException {
+        List<FileRecord> ordered = new ArrayList<>(records);
+        ordered.sort(Comparator.comparing(record -> record.inputFile.getPath()));
+        StringBuilder sb = new StringBuilder(256 + ordered.size() * 256);
+        sb.append("{\"files\":[");
+        for (int i = 0; i < ordered.size(); i++) {
+            FileRecord record = ordered.get(i);
+            if (i > 0) sb.append(',');
+            Json.appendString(sb.append("\n{\"input\":"), record.inputFile.getPath());
+            Json.appendString(sb.append(",\"output\":"), record.outputFile.getPath());
+            Json.appendMetrics(sb, record.metrics).append('}');
+        }
+        sb.append("],\n\"summary\":{\"files\":").append(ordered.size());
+        sb.append(",\"meshes\":").append(sum(metrics -> metrics.getMeshesCount()));
+        sb.append(",\"vertices\":").append(sum(FileMetrics::getVerticesCount));
+        sb.append(",\"triangles\":").append(sum(FileMetrics::getTrianglesCount));
+        sb.append(",\"bytesIn\":").append(sum(FileMetrics::getBytesIn));
+        sb.append(",\"bytesOut\":").append(sum(FileMetrics::getBytesOut));
+        appendStatistics(sb, "file", sorted(FileMetrics::getTotalNanos));
+        for (Stage stage : Stage.values()) {
+            appendStatistics(sb, stage.getLabel(), sorted(metrics -> metrics.getNanos(stage)));
+        }
+        sb.append("}}\n");
+        try (Writer out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            out.append(sb);
+        }
+    }
+
+    private long[] sorted(ToLongFunction<FileMetrics> value) {
+        long[] values = new long[records.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = value.applyAsLong(records.get(i).metrics);
+        }
+        Arrays.sort(values);
+        return values;
+    }
+
+    private long sum(ToLongFunction<FileMetrics> value) {
+        long sum = 0;
+        for (FileRecord record : records) {
+            sum += value.applyAsLong(record.metrics);
+        }
+        return sum;
+    }
+
+    /**
+     * Nearest-rank percentile of sorted values.
+     */
+    private static long percentile(long[] sorted, int percent) {
+        if (sorted.length == 0) return 0;
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    private static void appendRow(StringBuilder sb, String name, long[] sorted) {
+        sb.append(String.format("%-12s", name));
+        appendMillis(sb, Arrays.stream(sorted).sum(), 13);
+        appendMillis(sb, percentile(sorted, 50), 11);
+        appendMillis(sb, percentile(sorted, 95), 11);
+        appendMillis(sb, sorted[sorted.length - 1], 11);
+        sb.append(System.lineSeparator());
+    }
+
+    private static void appendMillis(StringBuilder sb, long nanos, int width) {
+        String millis = FloatFormatter.format(nanos / 1e6f, 1);
+        for (int i = millis.length(); i < width; i++) sb.append(' ');
+        sb.append(millis);
+    }
+
+    private static void appendStatistics(StringBuilder sb, String name, long[] sorted) {
+        sb.append(",\"").append(name).append("\":{\"totalNanos\":").append(Arrays.stream(sorted).sum());
+        sb.append(",\"p50Nanos\":").append(percentile(sorted, 50));
+        sb.append(",\"p95Nanos\":").append(percentile(sorted, 95));
+        sb.append(",\"maxNanos\":").append(sorted.length > 0 ? sorted[sorted.length - 1] : 0).append('}');
+    }
+}
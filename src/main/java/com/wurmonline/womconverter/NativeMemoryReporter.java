@@ -0,0 +1,65 @@
+package com.wurmonline.womconverter;
+
+import com.wurmonline.womconverter.events.ConversionListener;
+import org.lwjgl.system.MemoryUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Measures the memory of the process after each file, so that leaks of native libraries show up as growth
+ * over a batch. The resident memory of the process is read from {@code /proc/self/statm}, which is only
+ * available on Linux, and reported with its growth since the reporter was created. The memory committed for
+ * the Java heap is reported next to it, so growth of the heap can be told apart from native growth: once the
+ * heap has settled, resident memory of a healthy batch stays flat. The measures are process-wide and include
+ * files converted concurrently. The size Assimp reports for each imported scene is passed along for comparison.
+ */
+public class NativeMemoryReporter {
+
+    private static final Path STATM = Paths.get("/proc/self/statm");
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final BufferPoolMXBean directPool;
+    private final long baseline;
+
+    public NativeMemoryReporter() {
+        BufferPoolMXBean direct = null;
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) direct = pool;
+        }
+        directPool = direct;
+        baseline = residentBytes();
+    }
+
+    /**
+     * Measures the memory after a file was converted and reports it to the listener.
+     *
+     * @param sceneBytes memory Assimp reported for the imported scene
+     */
+    public void fileConverted(File inputFile, long sceneBytes, ConversionListener listener) {
+        long resident = residentBytes();
+        long growth = resident >= 0 && baseline >= 0 ? resident - baseline : -1;
+        long heapBytes = memory.getHeapMemoryUsage().getCommitted();
+        long directBytes = directPool != null ? directPool.getMemoryUsed() : -1;
+        listener.nativeMemoryMeasured(inputFile, sceneBytes, resident, growth, heapBytes, directBytes);
+    }
+
+    /**
+     * Resident memory of the process, or -1 when it can't be measured.
+     */
+    private static long residentBytes() {
+        try {
+            String[] fields = new String(Files.readAllBytes(STATM), StandardCharsets.US_ASCII).trim().split(" ");
+            return Long.parseLong(fields[1]) * MemoryUtil.PAGE_SIZE;
+        } catch (IOException | RuntimeException e) {
+            return -1;
+        }
+    }
+}
@@ -1,236 +1,453 @@
 package com.wurmonline.womconverter.converters;
 
-import com.google.common.io.LittleEndianDataOutputStream;
 import com.wurmonline.womconverter.MatReporter;
-import org.lwjgl.BufferUtils;
+import com.wurmonline.womconverter.NativeMemoryReporter;
+import com.wurmonline.womconverter.events.ConsoleListener;
+import com.wurmonline.womconverter.events.ConversionListener;
+import com.wurmonline.womconverter.events.FileMetrics;
+import com.wurmonline.womconverter.events.FileMetrics.Stage;
+import com.wurmonline.womconverter.io.CompactEncoding;
+import com.wurmonline.womconverter.io.MeteredChannel;
+import com.wurmonline.womconverter.io.PendingFile;
+import com.wurmonline.womconverter.io.QuantizationError;
+import com.wurmonline.womconverter.io.WomContainer;
+import com.wurmonline.womconverter.io.WomWriter;
+import com.wurmonline.womconverter.processing.MeshOptimizer;
+import com.wurmonline.womconverter.processing.MeshSimplifier;
+import com.wurmonline.womconverter.processing.MeshSplitter;
+import com.wurmonline.womconverter.model.Joint;
+import com.wurmonline.womconverter.model.Material;
+import com.wurmonline.womconverter.model.Mesh;
+import com.wurmonline.womconverter.model.Model;
+import com.wurmonline.womconverter.model.Skin;
 import org.lwjgl.PointerBuffer;
 import org.lwjgl.assimp.*;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 public class AssimpToWOMConverter {
 
-    private static final String FLOATS_FORMAT = "%.4f";
-
     public static void convert(File inputFile, File outputDirectory, boolean generateTangents, Properties forceMats, MatReporter matReport) throws MalformedURLException, IOException {
+        convert(inputFile, outputDirectory, generateTangents, forceMats, matReport, null);
+    }
+
+    public static void convert(File inputFile, File outputDirectory, boolean generateTangents, Properties forceMats, MatReporter matReport, NativeMemoryReporter nativeReport) throws MalformedURLException, IOException {
+        ConversionOptions options = new ConversionOptions();
+        options.setGenerateTangents(generateTangents);
+        options.setForceMats(forceMats);
+        convert(inputFile, outputDirectory, options, matReport, nativeReport, new ConsoleListener(System.out, System.err, true));
+    }
+
+    public static void convert(File inputFile, File outputDirectory, ConversionOptions options, MatReporter matReport, NativeMemoryReporter nativeReport, ConversionListener listener) throws MalformedURLException, IOException {
         if (inputFile == null || outputDirectory == null) {
             throw new IllegalArgumentException("Input file and/or output directory cannot be null");
         } else if (!outputDirectory.isDirectory()) {
             throw new IllegalArgumentException("Output directory is not a directory");
         }
 
-        System.out.println("------------------------------------------------------------------------");
-        System.out.println("Converting file: " + inputFile.getName() + ", output directory: " + outputDirectory.getAbsolutePath());
-
         String modelFileName = inputFile.getName();
         modelFileName = modelFileName.substring(0, modelFileName.lastIndexOf('.'));
+        File outputFile = new File(outputDirectory, modelFileName + ".wom");
+
+        listener.fileStarted(inputFile, outputFile);
+        long conversionStart = System.nanoTime();
+        FileMetrics metrics = new FileMetrics();
+        metrics.setBytesIn(inputFile.length());
+
+        // post-processing is applied separately, so its time can be told apart from parsing
+        long start = System.nanoTime();
+        AIScene scene = Assimp.aiImportFile(inputFile.getAbsolutePath(), 0);
+        metrics.add(Stage.IMPORT, System.nanoTime() - start);
+
+        Model model = convertScene(inputFile, scene, options, matReport, nativeReport, listener, metrics);
+
+        writeModel(model, outputFile, options, metrics);
+        for (Mesh mesh : model.getMeshes()) {
+            listener.meshWritten(inputFile, outputFile, mesh);
+        }
+
+        float[] lodRatios = options.getLodRatios();
+        for (int level = 1; level <= lodRatios.length; level++) {
+            start = System.nanoTime();
+            Model lod = new Model();
+            model.getJoints().forEach(lod::addJoint);
+            long lodTriangles = 0;
+            for (Mesh mesh : model.getMeshes()) {
+                Mesh simplified = MeshSimplifier.simplify(mesh, mesh.getName(), lodRatios[level - 1]);
+                if (options.isOptimize()) {
+                    MeshOptimizer.optimize(simplified);
+                }
+                lodTriangles += simplified.getTrianglesCount();
+                lod.addMesh(simplified);
+            }
+            metrics.add(Stage.LOD, System.nanoTime() - start);
+            File lodFile = new File(outputDirectory, modelFileName + "_lod" + level + ".wom");
+            writeModel(lod, lodFile, options, metrics);
+            for (Mesh mesh : lod.getMeshes()) {
+                listener.meshWritten(inputFile, lodFile, mesh);
+            }
+            listener.lodWritten(inputFile, lodFile, level, lodTriangles);
+        }
+
+        metrics.setTotalNanos(System.nanoTime() - conversionStart);
+
+        listener.fileFinished(inputFile, outputFile, metrics);
+
+        if (matReport != null) matReport.reportFile(inputFile.getName());
+    }
+
+    /**
+     * Post-processes an imported scene, which may be null if the import failed, and converts it to a model,
+     * optimized and measured according to the options. The scene is released.
+     *
+     * @throws IOException if the scene could not be imported or post-processed
+     */
+    static Model convertScene(File inputFile, AIScene scene, ConversionOptions options, MatReporter matReport, NativeMemoryReporter nativeReport, ConversionListener listener, FileMetrics metrics) throws IOException {
+        if (scene == null) {
+            throw new IOException("Failed to load scene from " + inputFile.getName() + " - " + Assimp.aiGetErrorString());
+        }
 
         int flags;
-        if (generateTangents) {
+        if (options.isGenerateTangents()) {
             flags = Assimp.aiProcess_JoinIdenticalVertices | Assimp.aiProcess_Triangulate | Assimp.aiProcess_CalcTangentSpace;
         } else {
             flags = Assimp.aiProcess_JoinIdenticalVertices | Assimp.aiProcess_Triangulate;
         }
-        AIScene scene = Assimp.aiImportFile(inputFile.getAbsolutePath(), flags);
+        long start = System.nanoTime();
+        scene = Assimp.aiApplyPostProcessing(scene, flags);
+        metrics.add(Stage.POSTPROCESS, System.nanoTime() - start);
 
         if (scene == null) {
-            System.err.printf("Failed to load scene from %s - %s%n", inputFile.getName(), Assimp.aiGetErrorString());
-            return;
-        }
-
-        LittleEndianDataOutputStream output = new LittleEndianDataOutputStream(new FileOutputStream(new File(outputDirectory, modelFileName + ".wom")));
-
-        PointerBuffer materialsPointer = scene.mMaterials();
-        AIMaterial[] materials = new AIMaterial[scene.mNumMaterials()];
-        for (int i = 0; i < scene.mNumMaterials(); i++) {
-            materials[i] = AIMaterial.create(materialsPointer.get(i));
+            throw new IOException("Failed to post-process scene from " + inputFile.getName() + " - " + Assimp.aiGetErrorString());
         }
 
-        PointerBuffer meshesPointer = scene.mMeshes();
-        AIMesh[] meshes = new AIMesh[scene.mNumMeshes()];
-        for (int i = 0; i < scene.mNumMeshes(); i++) {
-            meshes[i] = AIMesh.create(meshesPointer.get(i));
+        long sceneBytes = 0;
+        if (nativeReport != null) {
+            try (MemoryStack stack = MemoryStack.stackPush()) {
+                AIMemoryInfo memoryInfo = AIMemoryInfo.callocStack(stack);
+                Assimp.aiGetMemoryRequirements(scene, memoryInfo);
+                sceneBytes = Integer.toUnsignedLong(memoryInfo.total());
+            }
         }
 
-        int meshesCount = scene.mNumMeshes();
-        output.writeInt(meshesCount);
+        Model model = new Model();
+        try {
+            PointerBuffer materialsPointer = scene.mMaterials();
+            AIMaterial[] materials = new AIMaterial[scene.mNumMaterials()];
+            for (int i = 0; i < scene.mNumMaterials(); i++) {
+                materials[i] = AIMaterial.create(materialsPointer.get(i));
+            }
 
-        for (int i = 0; i < meshesCount; i++) {
-            writeMesh(output, meshes[i]);
+            PointerBuffer meshesPointer = scene.mMeshes();
+            AIMesh[] meshes = new AIMesh[scene.mNumMeshes()];
+            for (int i = 0; i < scene.mNumMeshes(); i++) {
+                meshes[i] = AIMesh.create(meshesPointer.get(i));
+            }
 
-            int materialCount = 1;
-            output.writeInt(materialCount);
-            writeMaterial(output, materials[meshes[i].mMaterialIndex()], forceMats, matReport);
+            start = System.nanoTime();
+            Map<String, Integer> jointIndices = options.isExportSkins() ? convertSkeleton(scene.mRootNode(), meshes, model) : null;
+            metrics.add(Stage.MESH, System.nanoTime() - start);
+
+            Material[] convertedMaterials = new Material[materials.length];
+            for (AIMesh aiMesh : meshes) {
+                start = System.nanoTime();
+                Mesh mesh = convertMesh(aiMesh);
+                if (jointIndices != null && aiMesh.mNumBones() > 0) {
+                    mesh.setSkin(convertSkin(aiMesh, jointIndices));
+                }
+                metrics.add(Stage.MESH, System.nanoTime() - start);
+                metrics.addMesh(mesh.getVerticesCount(), mesh.getTrianglesCount());
+                listener.meshConverted(inputFile, mesh.getName(), mesh.getVerticesCount(), mesh.getTrianglesCount(), mesh.hasTangents(), mesh.hasBinormal(), mesh.hasVertexColor());
+                start = System.nanoTime();
+                int materialIndex = aiMesh.mMaterialIndex();
+                Material material = convertedMaterials[materialIndex];
+                if (material == null) {
+                    material = convertMaterial(materials[materialIndex], options.getForceMats(), matReport);
+                    convertedMaterials[materialIndex] = material;
+                }
+                metrics.add(Stage.MATERIAL, System.nanoTime() - start);
+                listener.materialResolved(inputFile, material);
+                mesh.setMaterials(material);
+                if (MeshSplitter.needsSplit(mesh)) {
+                    start = System.nanoTime();
+                    List<Mesh> parts = MeshSplitter.split(mesh, MeshSplitter.MAX_VERTICES);
+                    metrics.add(Stage.MESH, System.nanoTime() - start);
+                    listener.meshSplit(inputFile, mesh.getName(), parts.size());
+                    parts.forEach(model::addMesh);
+                } else {
+                    model.addMesh(mesh);
+                }
+            }
+        } finally {
+            Assimp.aiReleaseImport(scene);
+            if (nativeReport != null) {
+                nativeReport.fileConverted(inputFile, sceneBytes, listener);
+            }
         }
 
-        int jointsCount = 0;
-        output.writeInt(jointsCount);
-        // joint exporting here
-
-        for (int i = 0; i < meshesCount; i++) {
-            boolean hasSkinning = false;
-            output.write(hasSkinning ? 1 : 0);
-            // skinning exporting here
+        if (options.isOptimize()) {
+            for (Mesh mesh : model.getMeshes()) {
+                start = System.nanoTime();
+                float acmrBefore = MeshOptimizer.acmr(mesh.getIndices(), mesh.getVerticesCount(), MeshOptimizer.ACMR_CACHE_SIZE);
+                MeshOptimizer.optimize(mesh);
+                float acmrAfter = MeshOptimizer.acmr(mesh.getIndices(), mesh.getVerticesCount(), MeshOptimizer.ACMR_CACHE_SIZE);
+                metrics.add(Stage.OPTIMIZE, System.nanoTime() - start);
+                listener.meshOptimized(inputFile, mesh.getName(), acmrBefore, acmrAfter);
+            }
         }
 
-        output.close();
-
-        System.out.println("File converted: " + inputFile.getName() + ", output directory: " + outputDirectory.getAbsolutePath());
+        if (options.isCompact()) {
+            for (Mesh mesh : model.getMeshes()) {
+                start = System.nanoTime();
+                QuantizationError error = CompactEncoding.measure(mesh);
+                metrics.add(Stage.SERIALIZE, System.nanoTime() - start);
+                listener.meshQuantized(inputFile, mesh.getName(), error.getPositionError(), error.getDirectionError(), error.getUvError());
+            }
+        }
+        return model;
+    }
 
-        if (matReport != null) matReport.reportFile(inputFile.getName());
+    private static void writeModel(Model model, File outputFile, ConversionOptions options, FileMetrics metrics) throws IOException {
+        try (PendingFile pending = new PendingFile(outputFile)) {
+            writeModel(model, MeteredChannel.open(pending.getTemporaryFile()), options, metrics);
+            pending.commit();
+        }
     }
 
-    private static void writeMesh(LittleEndianDataOutputStream output, AIMesh mesh) throws IOException {
-        boolean hasTangents = mesh.mTangents() != null;
-        output.write(hasTangents ? 1 : 0);
-        boolean hasBinormal = mesh.mBitangents() != null;
-        output.write(hasBinormal ? 1 : 0);
-        boolean hasVertexColor = mesh.mColors(0) != null;
-        output.write(hasVertexColor ? 1 : 0);
+    /**
+     * Writes the model in the format selected by the options and closes the channel.
+     */
+    static void writeModel(Model model, MeteredChannel channel, ConversionOptions options, FileMetrics metrics) throws IOException {
+        long start = System.nanoTime();
+        long openNanos = channel.getNanos();
+        if (options.isCompress()) {
+            try (MeteredChannel output = channel) {
+                WomContainer.write(model, options.isCompact(), output);
+            }
+        } else {
+            try (WomWriter output = new WomWriter(channel, options.isCompact())) {
+                output.writeModel(model);
+            }
+        }
+        metrics.add(Stage.SERIALIZE, System.nanoTime() - start - (channel.getNanos() - openNanos));
+        metrics.add(Stage.IO, channel.getNanos());
+        metrics.setBytesOut(metrics.getBytesOut() + channel.getBytes());
+    }
 
-        String name = mesh.mName().dataString();
-        writeString(output, name);
-        System.out.println("Mesh name:\t" + name);
+    private static Mesh convertMesh(AIMesh aiMesh) {
+        boolean hasTangents = aiMesh.mTangents() != null;
+        boolean hasBinormal = aiMesh.mBitangents() != null;
+        boolean hasVertexColor = aiMesh.mColors(0) != null;
 
-        System.out.println("Has tangents:\t" + hasTangents);
-        System.out.println("Has binormals:\t" + hasBinormal);
-        System.out.println("Has colors:\t" + hasVertexColor);
+        String name = aiMesh.mName().dataString();
+        int verticesCount = aiMesh.mNumVertices();
 
-        int verticesCount = mesh.mNumVertices();
-        output.writeInt(verticesCount);
-        System.out.println("Vertices:\t" + verticesCount);
+        Mesh mesh = new Mesh(name, verticesCount, hasVertexColor, hasTangents, hasBinormal);
+        copyVectors(aiMesh.mVertices(), mesh.getPositions());
+        copyVectors(aiMesh.mNormals(), mesh.getNormals());
 
+        float[] uvs = mesh.getUvs();
+        FloatBuffer uvSource = MemoryUtil.memFloatBuffer(aiMesh.mTextureCoords(0).address(), verticesCount * 3);
         for (int i = 0; i < verticesCount; i++) {
-            AIVector3D vertex = mesh.mVertices().get(i);
-            output.writeFloat(vertex.x());
-            output.writeFloat(vertex.y());
-            output.writeFloat(vertex.z());
-
-            AIVector3D normal = mesh.mNormals().get(i);
-            output.writeFloat(normal.x());
-            output.writeFloat(normal.y());
-            output.writeFloat(normal.z());
-
-            AIVector3D uv = mesh.mTextureCoords(0).get(i);
-            output.writeFloat(uv.x());
-            output.writeFloat(1 - uv.y());
-
-            if (hasVertexColor) {
-                AIColor4D.Buffer color = mesh.mColors(i);
-                output.writeFloat(color.r());
-                output.writeFloat(color.g());
-                output.writeFloat(color.b());
+            uvs[i * 2] = uvSource.get(i * 3);
+            uvs[i * 2 + 1] = uvSource.get(i * 3 + 1);
+        }
+
+        if (hasVertexColor) {
+            float[] colors = mesh.getColors();
+            FloatBuffer colorSource = MemoryUtil.memFloatBuffer(aiMesh.mColors(0).address(), verticesCount * 4);
+            for (int i = 0; i < verticesCount; i++) {
+                colors[i * 3] = colorSource.get(i * 4);
+                colors[i * 3 + 1] = colorSource.get(i * 4 + 1);
+                colors[i * 3 + 2] = colorSource.get(i * 4 + 2);
             }
+        }
+
+        if (hasTangents) {
+            copyVectors(aiMesh.mTangents(), mesh.getTangents());
+        }
 
-            if (hasTangents) {
-                AIVector3D tangent = mesh.mTangents().get(i);
-                output.writeFloat(tangent.x());
-                output.writeFloat(tangent.y());
-                output.writeFloat(tangent.z());
+        if (hasBinormal) {
+            copyVectors(aiMesh.mBitangents(), mesh.getBinormals());
+        }
+
+        // triangulation leaves points and lines alone, and they can't be drawn from a WOM mesh
+        int facesCount = aiMesh.mNumFaces();
+        int[] indices = new int[facesCount * 3];
+        int indicesCount = 0;
+        long facesAddress = aiMesh.mFaces().address();
+        for (int i = 0; i < facesCount; i++) {
+            long face = facesAddress + (long) i * AIFace.SIZEOF;
+            if (MemoryUtil.memGetInt(face + AIFace.MNUMINDICES) != 3) continue;
+            long faceIndices = MemoryUtil.memGetAddress(face + AIFace.MINDICES);
+            indices[indicesCount++] = MemoryUtil.memGetInt(faceIndices);
+            indices[indicesCount++] = MemoryUtil.memGetInt(faceIndices + 4);
+            indices[indicesCount++] = MemoryUtil.memGetInt(faceIndices + 8);
+        }
+        mesh.setIndices(indicesCount == indices.length ? indices : Arrays.copyOf(indices, indicesCount));
+        return mesh;
+    }
+
+    /**
+     * Adds the nodes that are bones of any mesh, and their ancestors, to the model as joints, parents first.
+     * Inverse bind matrices are taken from the first mesh using each bone. Bones without a node become root
+     * joints. Returns the index of each joint by name.
+     */
+    private static Map<String, Integer> convertSkeleton(AINode root, AIMesh[] meshes, Model model) {
+        Map<String, float[]> inverseBindMatrices = new LinkedHashMap<>();
+        for (AIMesh aiMesh : meshes) {
+            PointerBuffer bones = aiMesh.mBones();
+            for (int i = 0; i < aiMesh.mNumBones(); i++) {
+                AIBone bone = AIBone.create(bones.get(i));
+                inverseBindMatrices.computeIfAbsent(bone.mName().dataString(), name -> copyMatrix(bone.mOffsetMatrix()));
             }
+        }
 
-            if (hasBinormal) {
-                AIVector3D binormal = mesh.mBitangents().get(i);
-                output.writeFloat(binormal.x());
-                output.writeFloat(binormal.y());
-                output.writeFloat(binormal.z());
+        Map<String, Integer> jointIndices = new HashMap<>();
+        if (inverseBindMatrices.isEmpty()) {
+            return jointIndices;
+        }
+        List<Joint> joints = new ArrayList<>();
+        if (root != null) {
+            addJoints(root, -1, inverseBindMatrices, joints);
+        }
+        for (int i = 0; i < joints.size(); i++) {
+            jointIndices.putIfAbsent(joints.get(i).getName(), i);
+        }
+        inverseBindMatrices.forEach((name, inverseBindMatrix) -> {
+            if (!jointIndices.containsKey(name)) {
+                jointIndices.put(name, joints.size());
+                joints.add(new Joint(name, -1, Joint.identity(), inverseBindMatrix));
             }
+        });
+        joints.forEach(model::addJoint);
+        return jointIndices;
+    }
+
+    /**
+     * Adds the node and its descendants, then removes the node again if neither it nor any descendant is a bone.
+     * Descendants without bones have already removed themselves by then, so the node is the last joint added.
+     */
+    private static void addJoints(AINode node, int parent, Map<String, float[]> inverseBindMatrices, List<Joint> joints) {
+        String name = node.mName().dataString();
+        float[] inverseBindMatrix = inverseBindMatrices.get(name);
+        int index = joints.size();
+        joints.add(new Joint(name, parent, copyMatrix(node.mTransformation()), inverseBindMatrix != null ? inverseBindMatrix : Joint.identity()));
+        PointerBuffer children = node.mChildren();
+        for (int i = 0; i < node.mNumChildren(); i++) {
+            addJoints(AINode.create(children.get(i)), index, inverseBindMatrices, joints);
         }
+        if (inverseBindMatrix == null && joints.size() == index + 1) {
+            joints.remove(index);
+        }
+    }
 
-        int facesCount = mesh.mNumFaces();
-        System.out.println("Faces:\t\t" + facesCount);
-        System.out.println("Triangles:\t" + (facesCount * 3));
-        output.writeInt(facesCount * 3);
-        for (int i = 0; i < facesCount; i++) {
-            AIFace face = mesh.mFaces().get(i);
-            if (face.mIndices().get(0) > Short.MAX_VALUE || face.mIndices().get(1) > Short.MAX_VALUE || face.mIndices().get(2) > Short.MAX_VALUE)
-                throw new IllegalArgumentException(String.format("mesh %s has too many vertices and can't be represented correctly in WOM", name));
-            output.writeShort(face.mIndices().get(0));
-            output.writeShort(face.mIndices().get(1));
-            output.writeShort(face.mIndices().get(2));
+    /**
+     * Reads the vertex weights of each bone of the mesh into primitive arrays and builds the per-vertex table from them.
+     */
+    private static Skin convertSkin(AIMesh aiMesh, Map<String, Integer> jointIndices) throws IOException {
+        int bonesCount = aiMesh.mNumBones();
+        PointerBuffer bones = aiMesh.mBones();
+        String[] boneNames = new String[bonesCount];
+        int[] boneJoints = new int[bonesCount];
+        int[][] boneVertices = new int[bonesCount][];
+        float[][] boneWeights = new float[bonesCount][];
+        for (int i = 0; i < bonesCount; i++) {
+            AIBone bone = AIBone.create(bones.get(i));
+            boneNames[i] = bone.mName().dataString();
+            boneJoints[i] = jointIndices.get(boneNames[i]);
+            int weightsCount = bone.mNumWeights();
+            boneVertices[i] = new int[weightsCount];
+            boneWeights[i] = new float[weightsCount];
+            if (weightsCount == 0) continue;
+            long weightsAddress = bone.mWeights().address();
+            for (int j = 0; j < weightsCount; j++) {
+                long weight = weightsAddress + (long) j * AIVertexWeight.SIZEOF;
+                boneVertices[i][j] = MemoryUtil.memGetInt(weight + AIVertexWeight.MVERTEXID);
+                boneWeights[i][j] = MemoryUtil.memGetFloat(weight + AIVertexWeight.MWEIGHT);
+            }
         }
+        return Skin.fromBones(aiMesh.mName().dataString(), aiMesh.mNumVertices(), boneNames, boneJoints, boneVertices, boneWeights);
+    }
+
+    private static float[] copyMatrix(AIMatrix4x4 source) {
+        float[] matrix = new float[16];
+        MemoryUtil.memFloatBuffer(source.address(), 16).get(matrix);
+        return matrix;
+    }
 
-        System.out.println("");
+    /**
+     * Copies a native array of AIVector3D, three tightly packed floats each, in a single bulk get.
+     */
+    private static void copyVectors(AIVector3D.Buffer source, float[] target) {
+        MemoryUtil.memFloatBuffer(source.address(), target.length).get(target);
     }
 
-    private static void writeMaterial(LittleEndianDataOutputStream output, AIMaterial material, Properties forceMats, MatReporter matReport) throws IOException {
-        AIString textureNameNative = AIString.create();
-        Assimp.aiGetMaterialString(material, Assimp._AI_MATKEY_TEXTURE_BASE, Assimp.aiTextureType_DIFFUSE, 0, textureNameNative);
+    /**
+     * Reads a material of the scene. Meshes sharing a material index share the returned material, which is read once per scene.
+     */
+    private static Material convertMaterial(AIMaterial aiMaterial, ForceMats forceMats, MatReporter matReport) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            return convertMaterial(aiMaterial, forceMats, matReport, stack);
+        }
+    }
+
+    private static Material convertMaterial(AIMaterial aiMaterial, ForceMats forceMats, MatReporter matReport, MemoryStack stack) {
+        AIString textureNameNative = AIString.callocStack(stack);
+        Assimp.aiGetMaterialString(aiMaterial, Assimp._AI_MATKEY_TEXTURE_BASE, Assimp.aiTextureType_DIFFUSE, 0, textureNameNative);
         String textureName = textureNameNative.dataString();
         textureName = textureName.substring(Math.max(textureName.lastIndexOf("/"), textureName.lastIndexOf("\\")) + 1);
-        writeString(output, textureName);
 
-        AIString materialNameNative = AIString.create();
-        Assimp.aiGetMaterialString(material, Assimp.AI_MATKEY_NAME, 0, 0, materialNameNative);
+        AIString materialNameNative = AIString.callocStack(stack);
+        Assimp.aiGetMaterialString(aiMaterial, Assimp.AI_MATKEY_NAME, 0, 0, materialNameNative);
         String materialName = materialNameNative.dataString();
-        if (forceMats.containsKey(textureName))
-            materialName = forceMats.getProperty(textureName);
-        writeString(output, materialName);
+        String forcedName = forceMats.getMaterialFor(textureName);
+        if (forcedName != null)
+            materialName = forcedName;
 
         if (matReport != null)
             matReport.addMat(materialName, textureName);
 
-        System.out.println("Material name:\t" + materialName);
-        System.out.println("Texture path:\t" + textureName);
-
-        boolean isEnabled = true;
-        output.write(isEnabled ? 1 : 0);
-
-        boolean propertyExists = true;
-
-        output.write(propertyExists ? 1 : 0);
-        AIColor4D emissive = AIColor4D.create();
-        Assimp.aiGetMaterialColor(material, Assimp.AI_MATKEY_COLOR_EMISSIVE, 0, 0, emissive);
-        System.out.println("Emissive:\t" + String.format(FLOATS_FORMAT, emissive.r()) + "\t" + String.format(FLOATS_FORMAT, emissive.g()) + "\t" + String.format(FLOATS_FORMAT, emissive.b()) + "\t" + String.format(FLOATS_FORMAT, emissive.a()));
-        output.writeFloat(emissive.r());
-        output.writeFloat(emissive.g());
-        output.writeFloat(emissive.b());
-        output.writeFloat(emissive.a());
-
-        output.write(propertyExists ? 1 : 0);
-        FloatBuffer shininessBuffer = BufferUtils.createFloatBuffer(1);
-        IntBuffer valuesCountBuffer = BufferUtils.createIntBuffer(1);
-        valuesCountBuffer.put(1);
-        valuesCountBuffer.rewind();
-        Assimp.aiGetMaterialFloatArray(material, Assimp.AI_MATKEY_SHININESS, 0, 0, shininessBuffer, valuesCountBuffer);
+        Material material = new Material(textureName, materialName);
+
+        AIColor4D emissive = AIColor4D.callocStack(stack);
+        Assimp.aiGetMaterialColor(aiMaterial, Assimp.AI_MATKEY_COLOR_EMISSIVE, 0, 0, emissive);
+        copyColor(emissive, material.getEmissive());
+
+        FloatBuffer shininessBuffer = stack.callocFloat(1);
+        IntBuffer valuesCountBuffer = stack.ints(1);
+        Assimp.aiGetMaterialFloatArray(aiMaterial, Assimp.AI_MATKEY_SHININESS, 0, 0, shininessBuffer, valuesCountBuffer);
         float shininess = shininessBuffer.get(0);
-        System.out.println("Shininess:\t" + String.format(FLOATS_FORMAT, shininess));
-        output.writeFloat(shininess);
-
-        output.write(propertyExists ? 1 : 0);
-        AIColor4D specular = AIColor4D.create();
-        Assimp.aiGetMaterialColor(material, Assimp.AI_MATKEY_COLOR_SPECULAR, 0, 0, specular);
-        System.out.println("Specular:\t" + String.format(FLOATS_FORMAT, specular.r()) + "\t" + String.format(FLOATS_FORMAT, specular.g()) + "\t" + String.format(FLOATS_FORMAT, specular.b()) + "\t" + String.format(FLOATS_FORMAT, specular.a()));
-        output.writeFloat(specular.r());
-        output.writeFloat(specular.g());
-        output.writeFloat(specular.b());
-        output.writeFloat(specular.a());
-
-        output.write(propertyExists ? 1 : 0);
-        AIColor4D transparency = AIColor4D.create();
-        Assimp.aiGetMaterialColor(material, Assimp.AI_MATKEY_COLOR_TRANSPARENT, 0, 0, transparency);
-        System.out.println("Transparency:\t" + String.format(FLOATS_FORMAT, transparency.r()) + "\t" + String.format(FLOATS_FORMAT, transparency.g()) + "\t" + String.format(FLOATS_FORMAT, transparency.b()) + "\t" + String.format(FLOATS_FORMAT, transparency.a()));
-        output.writeFloat(transparency.r());
-        output.writeFloat(transparency.g());
-        output.writeFloat(transparency.b());
-        output.writeFloat(transparency.a());
-
-        System.out.println("");
-    }
+        material.setShininess(shininess);
 
-    private static void writeString(LittleEndianDataOutputStream output, String str) throws IOException {
-        byte[] chars = str.getBytes("UTF-8");
+        AIColor4D specular = AIColor4D.callocStack(stack);
+        Assimp.aiGetMaterialColor(aiMaterial, Assimp.AI_MATKEY_COLOR_SPECULAR, 0, 0, specular);
+        copyColor(specular, material.getSpecular());
 
-        output.writeInt(chars.length);
-        for (int i = 0; i < chars.length; i++) {
-            output.writeByte(chars[i]);
-        }
+        AIColor4D transparency = AIColor4D.callocStack(stack);
+        Assimp.aiGetMaterialColor(aiMaterial, Assimp.AI_MATKEY_COLOR_TRANSPARENT, 0, 0, transparency);
+        copyColor(transparency, material.getTransparency());
+        return material;
+    }
+
+    private static void copyColor(AIColor4D source, float[] target) {
+        target[0] = source.r();
+        target[1] = source.g();
+        target[2] = source.b();
+        target[3] = source.a();
     }
 
 }
@@ -0,0 +1,105 @@
+package com.wurmonline.womconverter.converters;
+
+import java.util.Properties;
+
+/**
+ * Settings shared by all files of a conversion.
+ */
+public class ConversionOptions {
+
+    private boolean generateTangents = false;
+    private ForceMats forceMats = ForceMats.EMPTY;
+    private boolean optimize = false;
+    private boolean compact = false;
+    private boolean compress = false;
+    private boolean exportSkins = false;
+    private float[] lodRatios = new float[0];
+
+    public boolean isGenerateTangents() {
+        return generateTangents;
+    }
+
+    public void setGenerateTangents(boolean generateTangents) {
+        this.generateTangents = generateTangents;
+    }
+
+    /**
+     * Material names forced for given texture file names or patterns.
+     */
+    public ForceMats getForceMats() {
+        return forceMats;
+    }
+
+    public void setForceMats(ForceMats forceMats) {
+        this.forceMats = forceMats;
+    }
+
+    /**
+     * Compiles the properties into {@link ForceMats}; later changes to them are not seen.
+     */
+    public void setForceMats(Properties forceMats) {
+        this.forceMats = ForceMats.of(forceMats);
+    }
+
+    /**
+     * Whether meshes are reordered for vertex cache and vertex fetch locality before being written.
+     */
+    public boolean isOptimize() {
+        return optimize;
+    }
+
+    public void setOptimize(boolean optimize) {
+        this.optimize = optimize;
+    }
+
+    /**
+     * Whether WOM files are written with quantized vertex attributes, see {@link com.wurmonline.womconverter.io.CompactEncoding}.
+     */
+    public boolean isCompact() {
+        return compact;
+    }
+
+    public void setCompact(boolean compact) {
+        this.compact = compact;
+    }
+
+    /**
+     * Whether WOM files are written as deflated {@link com.wurmonline.womconverter.io.WomContainer}s.
+     */
+    public boolean isCompress() {
+        return compress;
+    }
+
+    public void setCompress(boolean compress) {
+        this.compress = compress;
+    }
+
+    /**
+     * Whether joints and skin weights of rigged models are written to the WOM trailer. Off by default, as the
+     * layout written by {@link com.wurmonline.womconverter.io.WomWriter#writeTrailer} has not been checked
+     * against the game client; without it models are written with no joints and no skinned meshes.
+     */
+    public boolean isExportSkins() {
+        return exportSkins;
+    }
+
+    public void setExportSkins(boolean exportSkins) {
+        this.exportSkins = exportSkins;
+    }
+
+    /**
+     * Fraction of triangles kept in each generated level of detail, written as {@code <model>_lod<n>.wom}.
+     */
+    public float[] getLodRatios() {
+        return lodRatios;
+    }
+
+    public void setLodRatios(float... lodRatios) {
+        for (float ratio : lodRatios) {
+            if (!(ratio > 0 && ratio < 1)) {
+                throw new IllegalArgumentException("LOD ratio must be between 0 and 1: " + ratio);
+            }
+        }
+        this.lodRatios = lodRatios;
+    }
+}
@@ -0,0 +1,34 @@
+package com.wurmonline.womconverter.converters;
+
+import com.wurmonline.womconverter.events.FileMetrics;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a single conversion of {@link InMemoryConverter}.
+ */
+public class ConversionResult {
+
+    private final FileMetrics metrics;
+    private final List<String> warnings;
+
+    ConversionResult(FileMetrics metrics, List<String> warnings) {
+        this.metrics = metrics;
+        this.warnings = Collections.unmodifiableList(warnings);
+    }
+
+    /**
+     * Stage timings, mesh counts and input and output sizes of the conversion.
+     */
+    public FileMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Problems that did not stop the conversion, such as meshes split because of too many vertices.
+     */
+    public List<String> getWarnings() {
+        return warnings;
+    }
+}
@@ -0,0 +1,162 @@
+package com.wurmonline.womconverter.converters;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Material names forced for texture file names, compiled once and shared by all conversions.
+ * Every key matches the texture file name equal to it. Keys containing {@code *}, {@code ?} or {@code [}
+ * also match as glob patterns, and keys between slashes, like {@code /wall_\\d+\\.png/} (backslashes are
+ * doubled in properties files), as regular expressions. An exact name wins over patterns, which are tried in
+ * the order of the entries: the order of the file for {@link #load(File)}, the order of the keys for
+ * {@link #of(Properties)}. Instances are immutable and can be used by any number of threads.
+ */
+public final class ForceMats {
+
+    public static final ForceMats EMPTY = new ForceMats(Collections.emptyMap());
+
+    private final Map<String, String> entries;
+    private final Map<String, String> names = new HashMap<>();
+    private final List<Pattern> patterns = new ArrayList<>();
+    private final List<String> patternMaterials = new ArrayList<>();
+
+    private ForceMats(Map<String, String> entries) {
+        this.entries = Collections.unmodifiableMap(new LinkedHashMap<>(entries));
+        this.entries.forEach((key, material) -> {
+            // texture names may contain brackets, so patterns never hide the exact name
+            names.put(key, material);
+            if (key.length() > 2 && key.startsWith("/") && key.endsWith("/")) {
+                patterns.add(compile(key, key.substring(1, key.length() - 1)));
+                patternMaterials.add(material);
+            } else if (isGlob(key)) {
+                try {
+                    patterns.add(Pattern.compile(globToRegex(key)));
+                    patternMaterials.add(material);
+                } catch (PatternSyntaxException e) {
+                    // not a valid glob, like a[z-a].png, so the key only matches its exact name
+                }
+            }
+        });
+    }
+
+    /**
+     * Compiles the entries, patterns being tried in the iteration order of the map.
+     */
+    public static ForceMats of(Map<String, String> entries) {
+        return entries.isEmpty() ? EMPTY : new ForceMats(entries);
+    }
+
+    /**
+     * Compiles properties, which do not keep the order of the file, so patterns are tried in the order of their keys.
+     */
+    public static ForceMats of(Properties properties) {
+        Map<String, String> entries = new TreeMap<>();
+        properties.stringPropertyNames().forEach(key -> entries.put(key, properties.getProperty(key)));
+        return of(entries);
+    }
+
+    /**
+     * Reads a properties file, keeping the order of its entries.
+     */
+    public static ForceMats load(File file) throws IOException {
+        Map<String, String> entries = new LinkedHashMap<>();
+        Properties properties = new Properties() {
+            @Override
+            public synchronized Object put(Object key, Object value) {
+                entries.remove(key);
+                entries.put((String) key, (String) value);
+                return super.put(key, value);
+            }
+        };
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        }
+        return of(entries);
+    }
+
+    /**
+     * Material name forced for the texture file name, or null.
+     */
+    public String getMaterialFor(String textureName) {
+        String material = names.get(textureName);
+        if (material != null) {
+            return material;
+        }
+        for (int i = 0; i < patterns.size(); i++) {
+            if (patterns.get(i).matcher(textureName).matches()) {
+                return patternMaterials.get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Keys and material names as read, in the order patterns are tried.
+     */
+    public Map<String, String> getEntries() {
+        return entries;
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    private static boolean isGlob(String key) {
+        return key.indexOf('*') >= 0 || key.indexOf('?') >= 0 || key.indexOf('[') >= 0;
+    }
+
+    private static Pattern compile(String key, String regex) {
+        try {
+            return Pattern.compile(regex);
+        } catch (PatternSyntaxException e) {
+            throw new IllegalArgumentException("Invalid forcemats pattern: " + key, e);
+        }
+    }
+
+    /**
+     * Translates {@code *}, {@code ?} and {@code [...]} to a regular expression, quoting everything else.
+     */
+    private static String globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder(glob.length() * 2);
+        int literalStart = 0;
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c != '*' && c != '?' && c != '[') {
+                continue;
+            }
+            int end = c == '[' ? glob.indexOf(']', i + 1) : i;
+            if (end < 0) {
+                break;
+            }
+            if (i > literalStart) {
+                regex.append(Pattern.quote(glob.substring(literalStart, i)));
+            }
+            if (c == '*') {
+                regex.append(".*");
+            } else if (c == '?') {
+                regex.append('.');
+            } else {
+                String set = glob.substring(i + 1, end);
+                regex.append('[').append(set.startsWith("!") ? "^" + set.substring(1) : set).append(']');
+            }
+            i = end;
+            literalStart = end + 1;
+        }
+        if (literalStart < glob.length()) {
+            regex.append(Pattern.quote(glob.substring(literalStart)));
+        }
+        return regex.toString();
+    }
+}
@@ -0,0 +1,213 @@
+package com.wurmonline.womconverter.converters;
+
+import com.wurmonline.womconverter.events.ConversionListener;
+import com.wurmonline.womconverter.events.FileMetrics;
+import com.wurmonline.womconverter.events.FileMetrics.Stage;
+import com.wurmonline.womconverter.io.MeteredChannel;
+import com.wurmonline.womconverter.io.WomReader;
+import com.wurmonline.womconverter.model.Mesh;
+import com.wurmonline.womconverter.model.Model;
+import org.lwjgl.assimp.AIScene;
+import org.lwjgl.assimp.Assimp;
+import org.lwjgl.system.MemoryUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts models without going through the output directory, for embedding the converter in
+ * other tools. Input is read from a buffer, a stream or a file, and output is written to a channel,
+ * which is left open. Models are imported with Assimp directly from memory, so no temporary files
+ * are written. A converter can be shared by any number of threads; the listener given to it, if any,
+ * receives the events of all of them and must be thread-safe.
+ * <p>
+ * In-memory inputs are given a file name, which is used as a format hint by Assimp, for example
+ * {@code model.obj}, and in messages and listener events. Formats referencing other files, like
+ * materials of OBJ files, must be converted from a {@link Path} for those files to be found.
+ */
+public class InMemoryConverter {
+
+    /**
+     * Collects the warnings of a single conversion.
+     */
+    private static class ResultListener implements ConversionListener {
+        final List<String> warnings = new ArrayList<>();
+
+        @Override
+        public synchronized void meshSplit(File inputFile, String meshName, int partsCount) {
+            warnings.add("Mesh " + meshName + " has too many vertices and was split into " + partsCount + " meshes");
+        }
+    }
+
+    /**
+     * Channel passing writes to the caller's channel without closing it.
+     */
+    private static class UnclosedChannel implements WritableByteChannel {
+        private final WritableByteChannel channel;
+
+        UnclosedChannel(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return channel.write(src);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private final ConversionOptions options;
+    private final ConversionListener listener;
+
+    /**
+     * The options must not be changed while the converter is used. Levels of detail are not
+     * supported, as they need an output of their own.
+     */
+    public InMemoryConverter(ConversionOptions options) {
+        this(options, ConversionListener.QUIET);
+    }
+
+    public InMemoryConverter(ConversionOptions options, ConversionListener listener) {
+        if (options.getLodRatios().length > 0) {
+            throw new IllegalArgumentException("Levels of detail cannot be written to a single output");
+        }
+        this.options = options;
+        this.listener = listener;
+    }
+
+    /**
+     * Converts a model in any format supported by Assimp to WOM. The remaining bytes of the buffer are read,
+     * heap buffers are copied to native memory first.
+     */
+    public ConversionResult toWom(ByteBuffer input, String name, WritableByteChannel output) throws IOException {
+        if (!input.hasRemaining()) {
+            throw new IOException("Empty input: " + name);
+        }
+        boolean copied = !input.isDirect();
+        ByteBuffer nativeInput = copied ? MemoryUtil.memAlloc(input.remaining()).put(input.duplicate()).flip() : input.slice();
+        try {
+            File inputFile = new File(name);
+            FileMetrics metrics = new FileMetrics();
+            metrics.setBytesIn(nativeInput.remaining());
+            long start = System.nanoTime();
+            AIScene scene = Assimp.aiImportFileFromMemory(nativeInput, 0, extension(name));
+            metrics.add(Stage.IMPORT, System.nanoTime() - start);
+            return toWom(inputFile, scene, start, metrics, output);
+        } finally {
+            if (copied) MemoryUtil.memFree(nativeInput);
+        }
+    }
+
+    /**
+     * Reads the stream to its end and converts it like {@link #toWom(ByteBuffer, String, WritableByteChannel)}.
+     * The stream is not closed.
+     */
+    public ConversionResult toWom(InputStream input, String name, WritableByteChannel output) throws IOException {
+        return toWom(ByteBuffer.wrap(input.readAllBytes()), name, output);
+    }
+
+    /**
+     * Converts a model file to WOM. Files referenced by the model are looked up next to it.
+     */
+    public ConversionResult toWom(Path input, WritableByteChannel output) throws IOException {
+        File inputFile = input.toFile();
+        FileMetrics metrics = new FileMetrics();
+        metrics.setBytesIn(Files.size(input));
+        long start = System.nanoTime();
+        AIScene scene = Assimp.aiImportFile(inputFile.getAbsolutePath(), 0);
+        metrics.add(Stage.IMPORT, System.nanoTime() - start);
+        return toWom(inputFile, scene, start, metrics, output);
+    }
+
+    private ConversionResult toWom(File inputFile, AIScene scene, long conversionStart, FileMetrics metrics, WritableByteChannel output) throws IOException {
+        ResultListener result = new ResultListener();
+        ConversionListener listeners = ConversionListener.broadcast(listener, result);
+        File outputFile = new File(baseName(inputFile.getName()) + ".wom");
+        listeners.fileStarted(inputFile, outputFile);
+        Model model = AssimpToWOMConverter.convertScene(inputFile, scene, options, null, null, listeners, metrics);
+        AssimpToWOMConverter.writeModel(model, new MeteredChannel(new UnclosedChannel(output)), options, metrics);
+        for (Mesh mesh : model.getMeshes()) {
+            listeners.meshWritten(inputFile, outputFile, mesh);
+        }
+        return finish(inputFile, outputFile, conversionStart, metrics, listeners, result);
+    }
+
+    /**
+     * Converts a WOM model, plain, compact or compressed, to COLLADA.
+     */
+    public ConversionResult toDae(ByteBuffer input, String name, WritableByteChannel output) throws IOException {
+        File inputFile = new File(name);
+        FileMetrics metrics = new FileMetrics();
+        metrics.setBytesIn(input.remaining());
+        long start = System.nanoTime();
+        WomReader reader = WomReader.open(input);
+        metrics.add(Stage.IMPORT, System.nanoTime() - start);
+        return toDae(inputFile, reader, start, metrics, output);
+    }
+
+    /**
+     * Reads the stream to its end and converts it like {@link #toDae(ByteBuffer, String, WritableByteChannel)}.
+     * The stream is not closed.
+     */
+    public ConversionResult toDae(InputStream input, String name, WritableByteChannel output) throws IOException {
+        return toDae(ByteBuffer.wrap(input.readAllBytes()), name, output);
+    }
+
+    /**
+     * Converts a WOM file to COLLADA, reading the file through a memory mapping.
+     */
+    public ConversionResult toDae(Path input, WritableByteChannel output) throws IOException {
+        File inputFile = input.toFile();
+        FileMetrics metrics = new FileMetrics();
+        metrics.setBytesIn(Files.size(input));
+        long start = System.nanoTime();
+        WomReader reader = WomReader.open(inputFile);
+        metrics.add(Stage.IMPORT, System.nanoTime() - start);
+        return toDae(inputFile, reader, start, metrics, output);
+    }
+
+    private ConversionResult toDae(File inputFile, WomReader reader, long conversionStart, FileMetrics metrics, WritableByteChannel output) throws IOException {
+        ResultListener result = new ResultListener();
+        ConversionListener listeners = ConversionListener.broadcast(listener, result);
+        File outputFile = new File(baseName(inputFile.getName()) + ".dae");
+        listeners.fileStarted(inputFile, outputFile);
+        WOMToDAEConverter.writeDae(inputFile, reader, new MeteredChannel(new UnclosedChannel(output)), null, listeners, metrics);
+        return finish(inputFile, outputFile, conversionStart, metrics, listeners, result);
+    }
+
+    private static ConversionResult finish(File inputFile, File outputFile, long conversionStart, FileMetrics metrics, ConversionListener listeners, ResultListener result) {
+        metrics.setTotalNanos(System.nanoTime() - conversionStart);
+        listeners.fileFinished(inputFile, outputFile, metrics);
+        synchronized (result) {
+            return new ConversionResult(metrics, new ArrayList<>(result.warnings));
+        }
+    }
+
+    private static String baseName(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    /**
+     * Extension of the file name, telling Assimp the format of in-memory input.
+     */
+    private static String extension(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 ? name.substring(dot + 1) : "";
+    }
+}
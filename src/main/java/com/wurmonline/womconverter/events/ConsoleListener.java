@@ -0,0 +1,125 @@
+package com.wurmonline.womconverter.events;
+
+import com.wurmonline.womconverter.io.FloatFormatter;
+import com.wurmonline.womconverter.model.Material;
+
+import java.io.File;
+import java.io.PrintStream;
+
+/**
+ * Human readable console output. By default only finished files and errors are printed;
+ * the verbose mode also prints every mesh and material like the converters used to.
+ * Each event is printed with a single call, so lines of concurrently converted files don't mix.
+ */
+public class ConsoleListener implements ConversionListener {
+
+    private static final int FLOATS_DECIMALS = 4;
+
+    private final PrintStream out;
+    private final PrintStream err;
+    private final boolean verbose;
+
+    public ConsoleListener(PrintStream out, PrintStream err, boolean verbose) {
+        this.out = out;
+        this.err = err;
+        this.verbose = verbose;
+    }
+
+    @Override
+    public void fileStarted(File inputFile, File outputFile) {
+        if (!verbose) return;
+        out.print("------------------------------------------------------------------------" + System.lineSeparator()
+                  + "Converting file: " + inputFile.getName() + " to: " + outputFile.getAbsolutePath() + System.lineSeparator());
+    }
+
+    @Override
+    public void meshConverted(File inputFile, String meshName, int verticesCount, int trianglesCount, boolean hasTangents, boolean hasBinormal, boolean hasVertexColor) {
+        if (!verbose) return;
+        String nl = System.lineSeparator();
+        out.print("Mesh name:\t" + meshName + nl
+                  + "Has tangents:\t" + hasTangents + nl
+                  + "Has binormals:\t" + hasBinormal + nl
+                  + "Has colors:\t" + hasVertexColor + nl
+                  + "Vertices:\t" + verticesCount + nl
+                  + "Faces:\t\t" + trianglesCount + nl
+                  + "Triangles:\t" + (trianglesCount * 3) + nl
+                  + nl);
+    }
+
+    @Override
+    public void materialResolved(File inputFile, Material material) {
+        if (!verbose) return;
+        String nl = System.lineSeparator();
+        StringBuilder sb = new StringBuilder(256);
+        sb.append("Material name:\t").append(material.getMaterialName()).append(nl);
+        sb.append("Texture path:\t").append(material.getTextureName()).append(nl);
+        appendColor(sb.append("Emissive:"), material.getEmissive()).append(nl);
+        FloatFormatter.append(sb.append("Shininess:\t"), material.getShininess(), FLOATS_DECIMALS).append(nl);
+        appendColor(sb.append("Specular:"), material.getSpecular()).append(nl);
+        appendColor(sb.append("Transparency:"), material.getTransparency()).append(nl);
+        out.print(sb.append(nl));
+    }
+
+    @Override
+    public void meshSplit(File inputFile, String meshName, int partsCount) {
+        out.println("Split mesh: " + inputFile.getName() + " " + meshName + " into " + partsCount + " meshes");
+    }
+
+    @Override
+    public void meshOptimized(File inputFile, String meshName, float acmrBefore, float acmrAfter) {
+        StringBuilder sb = new StringBuilder(128).append("Optimized mesh: ").append(inputFile.getName()).append(' ').append(meshName).append(", ACMR: ");
+        FloatFormatter.append(sb, acmrBefore, 3).append(" -> ");
+        out.println(FloatFormatter.append(sb, acmrAfter, 3));
+    }
+
+    @Override
+    public void meshQuantized(File inputFile, String meshName, float positionError, float directionError, float uvError) {
+        StringBuilder sb = new StringBuilder(128).append("Quantized mesh: ").append(inputFile.getName()).append(' ').append(meshName).append(", max error position: ");
+        FloatFormatter.append(sb, positionError, 6).append(", direction: ");
+        FloatFormatter.append(sb, directionError, 4).append(" deg, uv: ");
+        out.println(FloatFormatter.append(sb, uvError, 6));
+    }
+
+    @Override
+    public void lodWritten(File inputFile, File outputFile, int level, long trianglesCount) {
+        if (!verbose) return;
+        out.println("LOD " + level + ":\t" + outputFile.getName() + ", " + trianglesCount + " triangles");
+    }
+
+    @Override
+    public void nativeMemoryMeasured(File inputFile, long sceneBytes, long residentBytes, long growthBytes, long heapBytes, long directBytes) {
+        out.println("Memory after " + inputFile.getName() + ": scene " + sceneBytes + " bytes, resident " + residentBytes + " bytes, growth in batch "
+                + growthBytes + " bytes, Java heap " + heapBytes + " bytes, direct buffers " + directBytes + " bytes");
+    }
+
+    @Override
+    public void fileFinished(File inputFile, File outputFile, FileMetrics metrics) {
+        StringBuilder sb = new StringBuilder(256);
+        if (verbose) {
+            sb.append("Time:\t");
+            for (FileMetrics.Stage stage : FileMetrics.Stage.values()) {
+                appendMillis(sb.append(' ').append(stage.getLabel()).append(' '), metrics.getNanos(stage)).append(" ms");
+            }
+            sb.append(System.lineSeparator());
+        }
+        sb.append("File converted: ").append(inputFile.getName()).append(" to: ").append(outputFile.getAbsolutePath());
+        appendMillis(sb.append(" ("), metrics.getTotalNanos()).append(" ms)");
+        out.println(sb);
+    }
+
+    @Override
+    public void error(File inputFile, String message, Throwable cause) {
+        err.println(message);
+    }
+
+    private static StringBuilder appendMillis(StringBuilder sb, long nanos) {
+        return FloatFormatter.append(sb, nanos / 1e6f, 1);
+    }
+
+    private static StringBuilder appendColor(StringBuilder sb, float[] color) {
+        for (float value : color) {
+            FloatFormatter.append(sb.append('\t'), value, FLOATS_DECIMALS);
+        }
+        return sb;
+    }
+}
@@ -0,0 +1,148 @@
+package com.wurmonline.womconverter.events;
+
+import com.wurmonline.womconverter.model.Material;
+import com.wurmonline.womconverter.model.Mesh;
+
+import java.io.File;
+
+/**
+ * Receives progress of conversions. Converters only pass raw values, so a listener that ignores
+ * an event costs nothing; text is built by the sinks that actually print it.
+ * Files of a batch are converted concurrently, so implementations must be thread-safe.
+ */
+public interface ConversionListener {
+
+    /**
+     * Listener ignoring all events.
+     */
+    ConversionListener QUIET = new ConversionListener() {
+    };
+
+    default void fileStarted(File inputFile, File outputFile) {
+    }
+
+    default void meshConverted(File inputFile, String meshName, int verticesCount, int trianglesCount, boolean hasTangents, boolean hasBinormal, boolean hasVertexColor) {
+    }
+
+    default void materialResolved(File inputFile, Material material) {
+    }
+
+    /**
+     * A mesh with more vertices than WOM can index was split into the given number of meshes.
+     */
+    default void meshSplit(File inputFile, String meshName, int partsCount) {
+    }
+
+    /**
+     * @param acmrBefore average vertex cache misses per triangle before reordering
+     * @param acmrAfter  the same after reordering
+     */
+    default void meshOptimized(File inputFile, String meshName, float acmrBefore, float acmrAfter) {
+    }
+
+    /**
+     * A mesh is about to be written in the compact WOM encoding.
+     *
+     * @param positionError  largest distance between an original and a decoded position
+     * @param directionError largest angle between an original and a decoded normal, tangent or binormal, in degrees
+     * @param uvError        largest difference in a single UV coordinate
+     */
+    default void meshQuantized(File inputFile, String meshName, float positionError, float directionError, float uvError) {
+    }
+
+    /**
+     * A mesh was written to an output file, after splitting, optimizing or simplifying. Listeners must not modify it.
+     */
+    default void meshWritten(File inputFile, File outputFile, Mesh mesh) {
+    }
+
+    /**
+     * @param level level of detail, 1 for the first simplified variant
+     */
+    default void lodWritten(File inputFile, File outputFile, int level, long trianglesCount) {
+    }
+
+    default void fileFinished(File inputFile, File outputFile, FileMetrics metrics) {
+    }
+
+    /**
+     * Memory measured after a file was imported and released, when requested with -nativereport.
+     * Measures are process-wide and -1 when they are not available on the platform.
+     *
+     * @param sceneBytes    memory Assimp reported for the imported scene
+     * @param residentBytes resident memory of the process
+     * @param growthBytes   change of residentBytes since the start of the batch
+     * @param heapBytes     memory committed for the Java heap
+     * @param directBytes   memory used by JVM direct buffers
+     */
+    default void nativeMemoryMeasured(File inputFile, long sceneBytes, long residentBytes, long growthBytes, long heapBytes, long directBytes) {
+    }
+
+    /**
+     * @param cause exception that stopped the conversion, or null when the converter gave up on its own
+     */
+    default void error(File inputFile, String message, Throwable cause) {
+    }
+
+    /**
+     * Combines listeners into one passing every event to each of them in order.
+     */
+    static ConversionListener broadcast(ConversionListener... listeners) {
+        return new ConversionListener() {
+            @Override
+            public void fileStarted(File inputFile, File outputFile) {
+                for (ConversionListener listener : listeners) listener.fileStarted(inputFile, outputFile);
+            }
+
+            @Override
+            public void meshConverted(File inputFile, String meshName, int verticesCount, int trianglesCount, boolean hasTangents, boolean hasBinormal, boolean hasVertexColor) {
+                for (ConversionListener listener : listeners) listener.meshConverted(inputFile, meshName, verticesCount, trianglesCount, hasTangents, hasBinormal, hasVertexColor);
+            }
+
+            @Override
+            public void materialResolved(File inputFile, Material material) {
+                for (ConversionListener listener : listeners) listener.materialResolved(inputFile, material);
+            }
+
+            @Override
+            public void meshSplit(File inputFile, String meshName, int partsCount) {
+                for (ConversionListener listener : listeners) listener.meshSplit(inputFile, meshName, partsCount);
+            }
+
+            @Override
+            public void meshOptimized(File inputFile, String meshName, float acmrBefore, float acmrAfter) {
+                for (ConversionListener listener : listeners) listener.meshOptimized(inputFile, meshName, acmrBefore, acmrAfter);
+            }
+
+            @Override
+            public void meshQuantized(File inputFile, String meshName, float positionError, float directionError, float uvError) {
+                for (ConversionListener listener : listeners) listener.meshQuantized(inputFile, meshName, positionError, directionError, uvError);
+            }
+
+            @Override
+            public void meshWritten(File inputFile, File outputFile, Mesh mesh) {
+                for (ConversionListener listener : listeners) listener.meshWritten(inputFile, outputFile, mesh);
+            }
+
+            @Override
+            public void lodWritten(File inputFile, File outputFile, int level, long trianglesCount) {
+                for (ConversionListener listener : listeners) listener.lodWritten(inputFile, outputFile, level, trianglesCount);
+            }
+
+            @Override
+            public void fileFinished(File inputFile, File outputFile, FileMetrics metrics) {
+                for (ConversionListener listener : listeners) listener.fileFinished(inputFile, outputFile, metrics);
+            }
+
+            @Override
+            public void nativeMemoryMeasured(File inputFile, long sceneBytes, long residentBytes, long growthBytes, long heapBytes, long directBytes) {
+                for (ConversionListener listener : listeners) listener.nativeMemoryMeasured(inputFile, sceneBytes, residentBytes, growthBytes, heapBytes, directBytes);
+            }
+
+            @Override
+            public void error(File inputFile, String message, Throwable cause) {
+                for (ConversionListener listener : listeners) listener.error(inputFile, message, cause);
+            }
+        };
+    }
+}
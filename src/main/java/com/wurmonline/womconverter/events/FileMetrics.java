@@ -0,0 +1,98 @@
+package com.wurmonline.womconverter.events;
+
+/**
+ * Time spent in each stage of a single file conversion, with the size of its input and output.
+ * Filled by the converter thread and handed to listeners when the file is finished.
+ */
+public class FileMetrics {
+
+    public enum Stage {
+        /** Reading and parsing the input file. */
+        IMPORT("import"),
+        /** Assimp post-processing: triangulation, vertex joining and tangent generation. */
+        POSTPROCESS("postprocess"),
+        /** Copying or decoding mesh data into the mesh model. */
+        MESH("mesh"),
+        /** Reading materials and applying material overrides. */
+        MATERIAL("material"),
+        /** Reordering triangles and vertices for the GPU caches. */
+        OPTIMIZE("optimize"),
+        /** Simplifying meshes for the levels of detail. */
+        LOD("lod"),
+        /** Encoding the output format. */
+        SERIALIZE("serialize"),
+        /** Writing the output file. */
+        IO("io");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private final long[] stageNanos = new long[Stage.values().length];
+    private long totalNanos;
+    private int meshesCount;
+    private long verticesCount;
+    private long trianglesCount;
+    private long bytesIn;
+    private long bytesOut;
+
+    public void add(Stage stage, long nanos) {
+        stageNanos[stage.ordinal()] += nanos;
+    }
+
+    public long getNanos(Stage stage) {
+        return stageNanos[stage.ordinal()];
+    }
+
+    public void addMesh(int verticesCount, int trianglesCount) {
+        this.meshesCount++;
+        this.verticesCount += verticesCount;
+        this.trianglesCount += trianglesCount;
+    }
+
+    /**
+     * Wall time of the whole conversion, including time not attributed to any stage.
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public void setTotalNanos(long totalNanos) {
+        this.totalNanos = totalNanos;
+    }
+
+    public int getMeshesCount() {
+        return meshesCount;
+    }
+
+    public long getVerticesCount() {
+        return verticesCount;
+    }
+
+    public long getTrianglesCount() {
+        return trianglesCount;
+    }
+
+    public long getBytesIn() {
+        return bytesIn;
+    }
+
+    public void setBytesIn(long bytesIn) {
+        this.bytesIn = bytesIn;
+    }
+
+    public long getBytesOut() {
+        return bytesOut;
+    }
+
+    public void setBytesOut(long bytesOut) {
+        this.bytesOut = bytesOut;
+    }
+}
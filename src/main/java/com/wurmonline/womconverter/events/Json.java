@@ -0,0 +1,230 @@
+package com.wurmonline.womconverter.events;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Minimal JSON encoding helpers for the machine-readable outputs, and a parser for the flat
+ * request objects of the conversion server.
+ */
+public final class Json {
+
+    private Json() {
+    }
+
+    public static StringBuilder appendString(StringBuilder sb, String value) {
+        if (value == null) {
+            return sb.append("null");
+        }
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"');
+    }
+
+    /**
+     * Appends the number, or null for NaN and infinities which JSON can't represent.
+     */
+    public static StringBuilder appendNumber(StringBuilder sb, float value) {
+        if (Float.isNaN(value) || Float.isInfinite(value)) {
+            return sb.append("null");
+        }
+        return sb.append(value);
+    }
+
+    /**
+     * Appends a value returned by {@link #parseObject(String)}.
+     */
+    public static StringBuilder appendValue(StringBuilder sb, Object value) {
+        if (value instanceof String) {
+            return appendString(sb, (String) value);
+        }
+        return sb.append(value);
+    }
+
+    /**
+     * Appends the sizes and stage times of a converted file as fields of an object being written.
+     */
+    public static StringBuilder appendMetrics(StringBuilder sb, FileMetrics metrics) {
+        sb.append(",\"meshes\":").append(metrics.getMeshesCount());
+        sb.append(",\"vertices\":").append(metrics.getVerticesCount());
+        sb.append(",\"triangles\":").append(metrics.getTrianglesCount());
+        sb.append(",\"bytesIn\":").append(metrics.getBytesIn());
+        sb.append(",\"bytesOut\":").append(metrics.getBytesOut());
+        sb.append(",\"totalNanos\":").append(metrics.getTotalNanos());
+        for (FileMetrics.Stage stage : FileMetrics.Stage.values()) {
+            sb.append(",\"").append(stage.getLabel()).append("Nanos\":").append(metrics.getNanos(stage));
+        }
+        return sb;
+    }
+
+    /**
+     * Parses an object whose values are strings, numbers, booleans or null, in order of appearance.
+     * Numbers are returned as {@link BigDecimal}, so they are written back unchanged.
+     *
+     * @throws IllegalArgumentException when the text is not such an object
+     */
+    public static Map<String, Object> parseObject(String text) {
+        Parser parser = new Parser(text);
+        Map<String, Object> object = new LinkedHashMap<>();
+        parser.expect('{');
+        if (!parser.consume('}')) {
+            do {
+                String name = parser.parseString();
+                parser.expect(':');
+                object.put(name, parser.parseValue());
+            } while (parser.consume(','));
+            parser.expect('}');
+        }
+        parser.skipWhitespace();
+        if (parser.position < text.length()) {
+            parser.fail("Unexpected content after the object");
+        }
+        return object;
+    }
+
+    private static class Parser {
+        private final String text;
+        private int position = 0;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        Object parseValue() {
+            skipWhitespace();
+            char c = peek();
+            if (c == '"') {
+                return parseString();
+            } else if (c == '{' || c == '[') {
+                fail("Nested objects and arrays are not supported");
+            } else if (text.startsWith("true", position)) {
+                position += 4;
+                return Boolean.TRUE;
+            } else if (text.startsWith("false", position)) {
+                position += 5;
+                return Boolean.FALSE;
+            } else if (text.startsWith("null", position)) {
+                position += 4;
+                return null;
+            }
+            int start = position;
+            while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) {
+                position++;
+            }
+            try {
+                return new BigDecimal(text.substring(start, position));
+            } catch (NumberFormatException e) {
+                position = start;
+                return fail("Invalid value");
+            }
+        }
+
+        String parseString() {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                if (position >= text.length()) {
+                    fail("Unterminated string");
+                }
+                char c = text.charAt(position++);
+                if (c == '"') {
+                    return sb.toString();
+                } else if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                char escaped = position < text.length() ? text.charAt(position++) : 0;
+                switch (escaped) {
+                    case '"':
+                    case '\\':
+                    case '/':
+                        sb.append(escaped);
+                        break;
+                    case 'b':
+                        sb.append('\b');
+                        break;
+                    case 'f':
+                        sb.append('\f');
+                        break;
+                    case 'n':
+                        sb.append('\n');
+                        break;
+                    case 'r':
+                        sb.append('\r');
+                        break;
+                    case 't':
+                        sb.append('\t');
+                        break;
+                    case 'u':
+                        if (position + 4 > text.length()) {
+                            fail("Invalid unicode escape");
+                        }
+                        try {
+                            sb.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        } catch (NumberFormatException e) {
+                            fail("Invalid unicode escape");
+                        }
+                        position += 4;
+                        break;
+                    default:
+                        fail("Invalid escape");
+                }
+            }
+        }
+
+        void expect(char expected) {
+            if (!consume(expected)) {
+                fail("Expected '" + expected + "'");
+            }
+        }
+
+        boolean consume(char expected) {
+            skipWhitespace();
+            if (position < text.length() && text.charAt(position) == expected) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        char peek() {
+            return position < text.length() ? text.charAt(position) : 0;
+        }
+
+        void skipWhitespace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+
+        <T> T fail(String message) {
+            throw new IllegalArgumentException(message + " at position " + position);
+        }
+    }
+}
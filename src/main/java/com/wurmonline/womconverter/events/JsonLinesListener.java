@@ -0,0 +1,137 @@
+package com.wurmonline.womconverter.events;
+
+import com.wurmonline.womconverter.model.Material;
+
+import java.io.File;
+import java.io.PrintStream;
+
+/**
+ * Writes every event as a single JSON object per line, for tools processing batch results.
+ */
+public class JsonLinesListener implements ConversionListener {
+
+    private final PrintStream out;
+
+    public JsonLinesListener(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void fileStarted(File inputFile, File outputFile) {
+        StringBuilder sb = begin("fileStarted", inputFile);
+        string(sb, "output", outputFile.getPath());
+        end(sb);
+    }
+
+    @Override
+    public void meshConverted(File inputFile, String meshName, int verticesCount, int trianglesCount, boolean hasTangents, boolean hasBinormal, boolean hasVertexColor) {
+        StringBuilder sb = begin("mesh", inputFile);
+        string(sb, "name", meshName);
+        sb.append(",\"vertices\":").append(verticesCount);
+        sb.append(",\"triangles\":").append(trianglesCount);
+        sb.append(",\"tangents\":").append(hasTangents);
+        sb.append(",\"binormals\":").append(hasBinormal);
+        sb.append(",\"colors\":").append(hasVertexColor);
+        end(sb);
+    }
+
+    @Override
+    public void materialResolved(File inputFile, Material material) {
+        StringBuilder sb = begin("material", inputFile);
+        string(sb, "name", material.getMaterialName());
+        string(sb, "texture", material.getTextureName());
+        numbers(sb, "emissive", material.getEmissive());
+        Json.appendNumber(sb.append(",\"shininess\":"), material.getShininess());
+        numbers(sb, "specular", material.getSpecular());
+        numbers(sb, "transparency", material.getTransparency());
+        end(sb);
+    }
+
+    @Override
+    public void meshSplit(File inputFile, String meshName, int partsCount) {
+        StringBuilder sb = begin("meshSplit", inputFile);
+        string(sb, "name", meshName);
+        sb.append(",\"parts\":").append(partsCount);
+        end(sb);
+    }
+
+    @Override
+    public void meshOptimized(File inputFile, String meshName, float acmrBefore, float acmrAfter) {
+        StringBuilder sb = begin("meshOptimized", inputFile);
+        string(sb, "name", meshName);
+        Json.appendNumber(sb.append(",\"acmrBefore\":"), acmrBefore);
+        Json.appendNumber(sb.append(",\"acmrAfter\":"), acmrAfter);
+        end(sb);
+    }
+
+    @Override
+    public void meshQuantized(File inputFile, String meshName, float positionError, float directionError, float uvError) {
+        StringBuilder sb = begin("meshQuantized", inputFile);
+        string(sb, "name", meshName);
+        Json.appendNumber(sb.append(",\"positionError\":"), positionError);
+        Json.appendNumber(sb.append(",\"directionError\":"), directionError);
+        Json.appendNumber(sb.append(",\"uvError\":"), uvError);
+        end(sb);
+    }
+
+    @Override
+    public void lodWritten(File inputFile, File outputFile, int level, long trianglesCount) {
+        StringBuilder sb = begin("lodWritten", inputFile);
+        string(sb, "output", outputFile.getPath());
+        sb.append(",\"level\":").append(level);
+        sb.append(",\"triangles\":").append(trianglesCount);
+        end(sb);
+    }
+
+    @Override
+    public void nativeMemoryMeasured(File inputFile, long sceneBytes, long residentBytes, long growthBytes, long heapBytes, long directBytes) {
+        StringBuilder sb = begin("nativeMemory", inputFile);
+        sb.append(",\"sceneBytes\":").append(sceneBytes);
+        sb.append(",\"residentBytes\":").append(residentBytes);
+        sb.append(",\"growthBytes\":").append(growthBytes);
+        sb.append(",\"heapBytes\":").append(heapBytes);
+        sb.append(",\"directBytes\":").append(directBytes);
+        end(sb);
+    }
+
+    @Override
+    public void fileFinished(File inputFile, File outputFile, FileMetrics metrics) {
+        StringBuilder sb = begin("fileFinished", inputFile);
+        string(sb, "output", outputFile.getPath());
+        Json.appendMetrics(sb, metrics);
+        end(sb);
+    }
+
+    @Override
+    public void error(File inputFile, String message, Throwable cause) {
+        StringBuilder sb = begin("error", inputFile);
+        string(sb, "message", message);
+        if (cause != null) {
+            string(sb, "exception", cause.getClass().getName());
+        }
+        end(sb);
+    }
+
+    private static StringBuilder begin(String event, File inputFile) {
+        StringBuilder sb = new StringBuilder(128).append("{\"event\":\"").append(event).append('"');
+        string(sb, "input", inputFile.getPath());
+        return sb;
+    }
+
+    private void end(StringBuilder sb) {
+        out.println(sb.append('}'));
+    }
+
+    private static void string(StringBuilder sb, String name, String value) {
+        Json.appendString(sb.append(",\"").append(name).append("\":"), value);
+    }
+
+    private static void numbers(StringBuilder sb, String name, float[] values) {
+        sb.append(",\"").append(name).append("\":[");
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) sb.append(',');
+            Json.appendNumber(sb, values[i]);
+        }
+        sb.append(']');
+    }
+}
@@ -0,0 +1,175 @@
+package com.wurmonline.womconverter.io;
+
+import com.wurmonline.womconverter.model.Mesh;
+
+/**
+ * Vertex quantization of compact WOM files. Every vertex attribute is stored in 16 bits per component:
+ * positions as fractions of the mesh bounding box, UVs as fractions of the mesh UV range, colors as
+ * fractions of [0, 1], and normals, tangents and binormals as two octahedral coordinates.
+ * Directions are normalized by the encoding, and UVs have V flipped like in plain WOM files.
+ */
+public final class CompactEncoding {
+
+    /**
+     * First int of a compact file, the bytes 'W' 'O' 'M' 0xC0 in file order. It is negative, so
+     * readers of the plain format fail on it instead of taking it for a mesh count.
+     */
+    static final int MAGIC = 0xC04D4F57;
+    static final int VERSION = 1;
+
+    private static final float UNORM_MAX = 65535f;
+    private static final float SNORM_MAX = 32767f;
+
+    private CompactEncoding() {
+    }
+
+    /**
+     * Number of 16-bit values per vertex in the compact vertex block.
+     */
+    public static int vertexSize(boolean hasVertexColor, boolean hasTangents, boolean hasBinormal) {
+        return 7 + (hasVertexColor ? 3 : 0) + (hasTangents ? 2 : 0) + (hasBinormal ? 2 : 0);
+    }
+
+    /**
+     * Computes the maximum error the compact encoding introduces in each attribute of the mesh.
+     */
+    public static QuantizationError measure(Mesh mesh) {
+        int verticesCount = mesh.getVerticesCount();
+        float[] positions = mesh.getPositions();
+        float[] uvs = flipV(mesh.getUvs());
+        float[] positionBounds = bounds(positions, 3);
+        float[] uvBounds = bounds(uvs, 2);
+
+        float[] decoded = new float[3];
+        double positionError = 0;
+        double uvError = 0;
+        double directionError = 0;
+        for (int i = 0; i < verticesCount; i++) {
+            double squared = 0;
+            for (int axis = 0; axis < 3; axis++) {
+                float value = positions[i * 3 + axis];
+                float min = positionBounds[axis];
+                float max = positionBounds[3 + axis];
+                double difference = decodeUnorm(encodeUnorm(value, min, max), min, max) - value;
+                squared += difference * difference;
+            }
+            positionError = Math.max(positionError, Math.sqrt(squared));
+            for (int axis = 0; axis < 2; axis++) {
+                float value = uvs[i * 2 + axis];
+                float min = uvBounds[axis];
+                float max = uvBounds[2 + axis];
+                uvError = Math.max(uvError, Math.abs(decodeUnorm(encodeUnorm(value, min, max), min, max) - value));
+            }
+            directionError = Math.max(directionError, angleError(mesh.getNormals(), i * 3, decoded));
+            if (mesh.hasTangents()) {
+                directionError = Math.max(directionError, angleError(mesh.getTangents(), i * 3, decoded));
+            }
+            if (mesh.hasBinormal()) {
+                directionError = Math.max(directionError, angleError(mesh.getBinormals(), i * 3, decoded));
+            }
+        }
+        return new QuantizationError((float) positionError, (float) Math.toDegrees(directionError), (float) uvError);
+    }
+
+    /**
+     * Angle in radians between a vector and its decoded octahedral encoding, 0 for zero vectors.
+     */
+    private static double angleError(float[] vectors, int offset, float[] decoded) {
+        float x = vectors[offset];
+        float y = vectors[offset + 1];
+        float z = vectors[offset + 2];
+        if (!(Math.abs(x) + Math.abs(y) + Math.abs(z) > 0)) {
+            return 0;
+        }
+        int encoded = encodeDirection(x, y, z);
+        decodeDirection((short) encoded, (short) (encoded >>> 16), decoded, 0);
+        double crossX = (double) y * decoded[2] - (double) z * decoded[1];
+        double crossY = (double) z * decoded[0] - (double) x * decoded[2];
+        double crossZ = (double) x * decoded[1] - (double) y * decoded[0];
+        double dot = (double) x * decoded[0] + (double) y * decoded[1] + (double) z * decoded[2];
+        return Math.atan2(Math.sqrt(crossX * crossX + crossY * crossY + crossZ * crossZ), dot);
+    }
+
+    static float[] flipV(float[] uvs) {
+        float[] flipped = uvs.clone();
+        for (int i = 1; i < flipped.length; i += 2) {
+            flipped[i] = 1 - flipped[i];
+        }
+        return flipped;
+    }
+
+    /**
+     * Minimum and maximum of each component of interleaved values: all minimums first, then all maximums.
+     * NaNs are ignored and components without any number get an empty range at 0.
+     */
+    static float[] bounds(float[] values, int components) {
+        float[] bounds = new float[components * 2];
+        for (int c = 0; c < components; c++) {
+            float min = Float.POSITIVE_INFINITY;
+            float max = Float.NEGATIVE_INFINITY;
+            for (int i = c; i < values.length; i += components) {
+                float value = values[i];
+                if (value < min) min = value;
+                if (value > max) max = value;
+            }
+            if (min <= max) {
+                bounds[c] = min;
+                bounds[components + c] = max;
+            }
+        }
+        return bounds;
+    }
+
+    static short encodeUnorm(float value, float min, float max) {
+        float extent = max - min;
+        if (!(extent > 0)) {
+            return 0;
+        }
+        float fraction = Math.min(Math.max((value - min) / extent, 0), 1);
+        return (short) Math.round(fraction * UNORM_MAX);
+    }
+
+    static float decodeUnorm(short value, float min, float max) {
+        return min + (max - min) * ((value & 0xFFFF) / UNORM_MAX);
+    }
+
+    /**
+     * Encodes a direction into two signed 16-bit octahedral coordinates, packed into the low
+     * and high half of the result. Zero vectors are encoded as +Z.
+     */
+    static int encodeDirection(float x, float y, float z) {
+        float length = Math.abs(x) + Math.abs(y) + Math.abs(z);
+        if (!(length > 0)) {
+            return 0;
+        }
+        float u = x / length;
+        float v = y / length;
+        if (z < 0) {
+            float foldedU = (1 - Math.abs(v)) * sign(u);
+            float foldedV = (1 - Math.abs(u)) * sign(v);
+            u = foldedU;
+            v = foldedV;
+        }
+        return (Math.round(u * SNORM_MAX) & 0xFFFF) | (Math.round(v * SNORM_MAX) << 16);
+    }
+
+    static void decodeDirection(short encodedU, short encodedV, float[] target, int offset) {
+        float u = Math.max(encodedU / SNORM_MAX, -1);
+        float v = Math.max(encodedV / SNORM_MAX, -1);
+        float z = 1 - Math.abs(u) - Math.abs(v);
+        if (z < 0) {
+            float unfoldedU = (1 - Math.abs(v)) * sign(u);
+            float unfoldedV = (1 - Math.abs(u)) * sign(v);
+            u = unfoldedU;
+            v = unfoldedV;
+        }
+        float length = (float) Math.sqrt(u * u + v * v + z * z);
+        target[offset] = u / length;
+        target[offset + 1] = v / length;
+        target[offset + 2] = z / length;
+    }
+
+    private static float sign(float value) {
+        return value < 0 ? -1 : 1;
+    }
+}
@@ -0,0 +1,456 @@
+package com.wurmonline.womconverter.io;
+
+import com.wurmonline.womconverter.model.Joint;
+import com.wurmonline.womconverter.model.Material;
+import com.wurmonline.womconverter.model.Mesh;
+import com.wurmonline.womconverter.model.Skin;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Streaming COLLADA writer. Elements are appended to a small text buffer which is handed
+ * to a bounded UTF-8 channel writer whenever it fills up, so memory use does not grow with
+ * the size of the document. Callers write the document in order: header, libraries and
+ * their elements, scene, end.
+ */
+public class DaeWriter implements Closeable {
+
+    private static final int FLOATS_DECIMALS = 6;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Writer writer;
+    private final StringBuilder sb = new StringBuilder(BUFFER_SIZE + 1024);
+    private final char[] chars = new char[BUFFER_SIZE + 1024];
+
+    public DaeWriter(WritableByteChannel channel) {
+        this.writer = Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), BUFFER_SIZE);
+    }
+
+    public static DaeWriter open(File file) throws IOException {
+        return new DaeWriter(FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    public void writeHeader() throws IOException {
+        sb.append("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n")
+          .append("<COLLADA xmlns=\"http://www.collada.org/2005/11/COLLADASchema\" version=\"1.4.1\">\n")
+          .append("  <asset>\n")
+          .append("    <contributor>\n")
+          .append("      <author>").append("Arkonik").append("</author>\n")
+          .append("      <authoring_tool>").append("FBX COLLADA exporter").append("</authoring_tool>\n")
+          .append("      <comments></comments>\n")
+          .append("    </contributor>\n")
+          .append("    <created>").append("2015-11-20T15:27:18Z").append("</created>\n")
+          .append("    <keywords></keywords>\n")
+          .append("    <modified>").append("2015-11-20T15:27:18Z").append("</modified>\n")
+          .append("    <revision></revision>\n")
+          .append("    <subject></subject>\n")
+          .append("    <title></title>\n")
+          .append("    <unit meter=\"1.000000\" name=\"centimeter\"></unit>\n")
+          .append("    <up_axis>Y_UP</up_axis>\n")
+          .append("  </asset>\n");
+        flushIfFull();
+    }
+
+    /**
+     * Opens a library element, for example {@code library_images}.
+     */
+    public void beginLibrary(String library) {
+        sb.append("  <").append(library).append(">\n");
+    }
+
+    public void endLibrary(String library) throws IOException {
+        sb.append("  </").append(library).append(">\n");
+        flushIfFull();
+    }
+
+    public void writeImage(Material material) throws IOException {
+        sb.append("    <image id=\"").append(material.getMaterialName()).append("-image\" name=\"").append(material.getMaterialName()).append("\"><init_from>").append(material.getTextureName()).append("</init_from></image>\n");
+        flushIfFull();
+    }
+
+    public void writeMaterial(Material material) throws IOException {
+        sb.append("    <material id=\"").append(material.getMaterialName()).append("1F\" name=\"").append(material.getMaterialName()).append("1F\">\n")
+          .append("      <instance_effect url=\"#").append(material.getMaterialName()).append("1F-fx\"/>\n")
+          .append("    </material>\n");
+        flushIfFull();
+    }
+
+    public void writeEffect(Material material) throws IOException {
+        sb.append("    <effect id=\"").append(material.getMaterialName()).append("1F-fx\" name=\"").append(material.getMaterialName()).append("1F\">\n")
+          .append("      <profile_COMMON>\n")
+          .append("        <technique sid=\"standard\">\n")
+          .append("          <phong>\n")
+          .append("            <emission>\n")
+          .append("              <color sid=\"emission\">");
+        appendColor(material.getEmissive());
+        sb.append("</color>\n")
+          .append("            </emission>\n")
+          .append("            <ambient>\n")
+          .append("              <color sid=\"ambient\">1.000000  1.000000 1.000000 1.000000</color>\n")
+          .append("            </ambient>\n")
+          .append("            <diffuse>\n")
+          .append("              <texture texture=\"").append(material.getMaterialName()).append("-image\" texcoord=\"CHANNEL0\">\n")
+          .append("                <extra>\n")
+          .append("                  <technique profile=\"MAYA\">\n")
+          .append("                    <wrapU sid=\"wrapU0\">TRUE</wrapU>\n")
+          .append("                    <wrapV sid=\"wrapV0\">TRUE</wrapV>\n")
+          .append("                    <blend_mode>NONE</blend_mode>\n")
+          .append("                  </technique>\n")
+          .append("                </extra>\n")
+          .append("              </texture>\n")
+          .append("            </diffuse>\n")
+          .append("            <specular>\n")
+          .append("              <color sid=\"specular\">");
+        appendColor(material.getSpecular());
+        sb.append("</color>\n")
+          .append("            </specular>\n")
+          .append("            <shininess>\n")
+          .append("              <float sid=\"shininess\">");
+        appendFloat(material.getShininess());
+        sb.append("</float>\n")
+          .append("            </shininess>\n")
+          .append("            <reflective>\n")
+          .append("              <color sid=\"reflective\">0.000000  0.000000 0.000000 1.000000</color>\n")
+          .append("            </reflective>\n")
+          .append("            <reflectivity>\n")
+          .append("              <float sid=\"reflectivity\">0.000000</float>\n")
+          .append("            </reflectivity>\n")
+          .append("            <transparent opaque=\"RGB_ZERO\">\n")
+          .append("              <color sid=\"transparent\">");
+        appendColor(material.getTransparency());
+        sb.append("</color>\n")
+          .append("            </transparent>\n")
+          .append("            <transparency>\n")
+          .append("              <float sid=\"transparency\">1.000000</float>\n")
+          .append("            </transparency>\n")
+          .append("          </phong>\n")
+          .append("        </technique>\n")
+          .append("      </profile_COMMON>\n")
+          .append("    </effect>\n");
+        flushIfFull();
+    }
+
+    public void writeGeometry(Mesh mesh, String materialName) throws IOException {
+        int verticesCount = mesh.getVerticesCount();
+        int normalsCount = verticesCount;
+        int uvCount = verticesCount;
+        float[] positions = mesh.getPositions();
+        float[] normals = mesh.getNormals();
+        float[] uvs = mesh.getUvs();
+        int[] indices = mesh.getIndices();
+        sb.append("    <geometry id=\"").append(mesh.getName()).append("-lib\" name=\"").append(mesh.getName()).append("Mesh\">\n")
+          .append("      <mesh>\n")
+          .append("        <source id=\"").append(mesh.getName()).append("-POSITION\">\n")
+          .append("          <float_array id=\"").append(mesh.getName()).append("-POSITION-array\" count=\"").append(verticesCount*3).append("\">\n");
+        for(int i=0; i<verticesCount*3; i+=3) {
+            appendFloat(positions[i]).append(" ");
+            appendFloat(positions[i+1]).append(" ");
+            appendFloat(positions[i+2]).append("\n");
+            flushIfFull();
+        }
+        sb.append("</float_array>\n")
+          .append("          <technique_common>\n")
+          .append("            <accessor source=\"#").append(mesh.getName()).append("-POSITION-array\" count=\"").append(verticesCount).append("\" stride=\"3\">\n")
+          .append("              <param name=\"X\" type=\"float\"/>\n")
+          .append("              <param name=\"Y\" type=\"float\"/>\n")
+          .append("              <param name=\"Z\" type=\"float\"/>\n")
+          .append("            </accessor>\n")
+          .append("          </technique_common>\n")
+          .append("        </source>\n")
+          .append("        <source id=\"").append(mesh.getName()).append("-Normal0\">\n")
+          .append("          <float_array id=\"").append(mesh.getName()).append("-Normal0-array\" count=\"").append(normalsCount*3).append("\">\n" );
+        for(int i=0; i<verticesCount*3; i+=3) {
+            appendFloat(normals[i]).append(" ");
+            appendFloat(normals[i+1]).append(" ");
+            appendFloat(normals[i+2]).append("\n");
+            flushIfFull();
+        }
+        sb.append("</float_array>\n")
+          .append("          <technique_common>\n")
+          .append("            <accessor source=\"#").append(mesh.getName()).append("-Normal0-array\" count=\"").append(normalsCount).append("\" stride=\"3\">\n")
+          .append("              <param name=\"X\" type=\"float\"/>\n")
+          .append("              <param name=\"Y\" type=\"float\"/>\n")
+          .append("              <param name=\"Z\" type=\"float\"/>\n")
+          .append("            </accessor>\n")
+          .append("          </technique_common>\n")
+          .append("        </source>\n")
+          .append("        <source id=\"").append(mesh.getName()).append("-UV0\">\n")
+          .append("          <float_array id=\"").append(mesh.getName()).append("-UV0-array\" count=\"").append(uvCount*2).append("\">\n" );
+        for(int i=0; i<verticesCount*2; i+=2) {
+            appendFloat(uvs[i]).append(" ");
+            appendFloat(uvs[i+1]).append("\n");
+            flushIfFull();
+        }
+        sb.append("</float_array>\n")
+          .append("          <technique_common>\n")
+          .append("            <accessor source=\"#").append(mesh.getName()).append("-UV0-array\" count=\"").append(uvCount).append("\" stride=\"2\">\n")
+          .append("              <param name=\"S\" type=\"float\"/>\n")
+          .append("              <param name=\"T\" type=\"float\"/>\n")
+          .append("            </accessor>\n")
+          .append("          </technique_common>\n")
+          .append("        </source>\n")
+          .append("        <vertices id=\"").append(mesh.getName()).append("-VERTEX\">\n")
+          .append("          <input semantic=\"POSITION\" source=\"#").append(mesh.getName()).append("-POSITION\"/>\n")
+          .append("        </vertices>\n")
+          .append("        <triangles count=\"").append(mesh.getTrianglesCount()).append("\" material=\"").append(materialName).append("1F\">\n")
+          .append("          <input semantic=\"VERTEX\" offset=\"0\" source=\"#").append(mesh.getName()).append("-VERTEX\"/>\n")
+          .append("          <input semantic=\"NORMAL\" offset=\"1\" source=\"#").append(mesh.getName()).append("-Normal0\"/>\n")
+          .append("          <input semantic=\"TEXCOORD\" offset=\"2\" set=\"0\" source=\"#").append(mesh.getName()).append("-UV0\"/><p>");
+        for(int i=0; i<indices.length; i+=3) {
+            sb.append(" ").append(indices[i]).append(" ").append(indices[i+1]).append(" ").append(indices[i+1]);
+            flushIfFull();
+        }
+        sb.append("</p></triangles>\n")
+          .append("      </mesh>\n")
+          .append("    </geometry>\n");
+        flushIfFull();
+    }
+
+    /**
+     * Writes the skin of a mesh as a controller of its geometry. Joints are referred to by their sids
+     * {@code joint0}, {@code joint1}... which the skeleton nodes of {@link #writeVisualScene(String, String, List)} carry.
+     */
+    public void writeController(String meshName, Skin skin, List<Joint> joints) throws IOException {
+        int jointsCount = joints.size();
+        int[] offsets = skin.getOffsets();
+        int[] skinJoints = skin.getJoints();
+        float[] weights = skin.getWeights();
+        int verticesCount = skin.getVerticesCount();
+        sb.append("    <controller id=\"").append(meshName).append("-skin\" name=\"").append(meshName).append("Skin\">\n")
+          .append("      <skin source=\"#").append(meshName).append("-lib\">\n")
+          .append("        <bind_shape_matrix>1 0 0 0 0 1 0 0 0 0 1 0 0 0 0 1</bind_shape_matrix>\n")
+          .append("        <source id=\"").append(meshName).append("-skin-joints\">\n")
+          .append("          <Name_array id=\"").append(meshName).append("-skin-joints-array\" count=\"").append(jointsCount).append("\">");
+        for(int i=0; i<jointsCount; ++i) {
+            sb.append(i>0 ? " joint" : "joint").append(i);
+        }
+        sb.append("</Name_array>\n")
+          .append("          <technique_common>\n")
+          .append("            <accessor source=\"#").append(meshName).append("-skin-joints-array\" count=\"").append(jointsCount).append("\" stride=\"1\">\n")
+          .append("              <param name=\"JOINT\" type=\"name\"/>\n")
+          .append("            </accessor>\n")
+          .append("          </technique_common>\n")
+          .append("        </source>\n")
+          .append("        <source id=\"").append(meshName).append("-skin-bind_poses\">\n")
+          .append("          <float_array id=\"").append(meshName).append("-skin-bind_poses-array\" count=\"").append(jointsCount*16).append("\">\n");
+        for(Joint joint : joints) {
+            appendMatrix(joint.getInverseBindMatrix()).append("\n");
+            flushIfFull();
+        }
+        sb.append("</float_array>\n")
+          .append("          <technique_common>\n")
+          .append("            <accessor source=\"#").append(meshName).append("-skin-bind_poses-array\" count=\"").append(jointsCount).append("\" stride=\"16\">\n")
+          .append("              <param name=\"TRANSFORM\" type=\"float4x4\"/>\n")
+          .append("            </accessor>\n")
+          .append("          </technique_common>\n")
+          .append("        </source>\n")
+          .append("        <source id=\"").append(meshName).append("-skin-weights\">\n")
+          .append("          <float_array id=\"").append(meshName).append("-skin-weights-array\" count=\"").append(weights.length).append("\">\n");
+        for(int i=0; i<weights.length; ++i) {
+            appendFloat(weights[i]).append(i%8==7 ? "\n" : " ");
+            flushIfFull();
+        }
+        sb.append("</float_array>\n")
+          .append("          <technique_common>\n")
+          .append("            <accessor source=\"#").append(meshName).append("-skin-weights-array\" count=\"").append(weights.length).append("\" stride=\"1\">\n")
+          .append("              <param name=\"WEIGHT\" type=\"float\"/>\n")
+          .append("            </accessor>\n")
+          .append("          </technique_common>\n")
+          .append("        </source>\n")
+          .append("        <joints>\n")
+          .append("          <input semantic=\"JOINT\" source=\"#").append(meshName).append("-skin-joints\"/>\n")
+          .append("          <input semantic=\"INV_BIND_MATRIX\" source=\"#").append(meshName).append("-skin-bind_poses\"/>\n")
+          .append("        </joints>\n")
+          .append("        <vertex_weights count=\"").append(verticesCount).append("\">\n")
+          .append("          <input semantic=\"JOINT\" source=\"#").append(meshName).append("-skin-joints\" offset=\"0\"/>\n")
+          .append("          <input semantic=\"WEIGHT\" source=\"#").append(meshName).append("-skin-weights\" offset=\"1\"/>\n")
+          .append("          <vcount>");
+        for(int v=0; v<verticesCount; ++v) {
+            sb.append(v>0 ? " " : "").append(offsets[v+1]-offsets[v]);
+            flushIfFull();
+        }
+        sb.append("</vcount>\n")
+          .append("          <v>");
+        for(int i=0; i<skinJoints.length; ++i) {
+            sb.append(i>0 ? " " : "").append(skinJoints[i]).append(" ").append(i);
+            flushIfFull();
+        }
+        sb.append("</v>\n")
+          .append("        </vertex_weights>\n")
+          .append("      </skin>\n")
+          .append("    </controller>\n");
+        flushIfFull();
+    }
+
+    public void writeVisualScene(String meshName, String materialName) throws IOException {
+        writeVisualScene(meshName, materialName, null);
+    }
+
+    /**
+     * Writes the scene of a mesh. Skinned meshes, given the joints of the model, instantiate their controller
+     * and carry the skeleton as child nodes, with ids prefixed by the mesh name so scenes do not clash.
+     */
+    public void writeVisualScene(String meshName, String materialName, List<Joint> joints) throws IOException {
+        String instance = joints != null ? "instance_controller" : "instance_geometry";
+        sb.append("    <visual_scene id=\"").append(meshName).append("\" name=\"").append(meshName).append("\">\n")
+          .append("      <node name=\"").append(meshName).append("\" id=\"").append(meshName).append("\" sid=\"").append(meshName).append("\">\n")
+          .append("        <matrix sid=\"matrix\">")
+          .append("-1.000000 0.000000 0.000000 0.000000 0.000000 1.000000 -0.000000 0.000000 -0.000000 -0.000000 -1.000000 0.000000 0.000000 0.000000 0.000000 1.000000")
+          .append("</matrix>\n")
+          .append("        <").append(instance).append(" url=\"#").append(meshName).append(joints != null ? "-skin" : "-lib").append("\">\n");
+        if(joints != null) {
+            for(int i=0; i<joints.size(); ++i) {
+                if(joints.get(i).getParent()<0) sb.append("          <skeleton>#").append(meshName).append("-joint").append(i).append("</skeleton>\n");
+            }
+        }
+        sb.append("          <bind_material>\n")
+          .append("            <technique_common>\n")
+          .append("              <instance_material symbol=\"").append(materialName).append("1F\" target=\"#").append(materialName).append("1F\"/>\n")
+          .append("            </technique_common>\n")
+          .append("          </bind_material>\n")
+          .append("        </").append(instance).append(">\n");
+        if(joints != null) {
+            appendJoints(meshName, joints);
+        }
+        sb.append("        <extra>\n")
+          .append("          <technique profile=\"FCOLLADA\"><visibility>1.000000</visibility></technique>\n")
+          .append("        </extra>\n")
+          .append("      </node>\n")
+          .append("      <extra>")
+          .append("        <technique profile=\"MAX3D\">")
+          .append("          <frame_rate>30.000000</frame_rate>")
+          .append("        </technique>")
+          .append("        <technique profile=\"FCOLLADA\">")
+          .append("          <start_time>0.000000</start_time>")
+          .append("          <end_time>3.333333</end_time>")
+          .append("        </technique>")
+          .append("      </extra>\n")
+          .append("    </visual_scene>\n");
+        flushIfFull();
+    }
+
+    /**
+     * Appends the joints as nested nodes, walking the hierarchy depth first with an explicit stack.
+     */
+    private void appendJoints(String meshName, List<Joint> joints) throws IOException {
+        int jointsCount = joints.size();
+        int[] firstChild = new int[jointsCount];
+        int[] nextSibling = new int[jointsCount];
+        Arrays.fill(firstChild, -1);
+        Arrays.fill(nextSibling, -1);
+        int firstRoot = -1;
+        // linking children in reverse keeps them in file order
+        for(int i=jointsCount-1; i>=0; --i) {
+            int parent = joints.get(i).getParent();
+            if(parent<0) {
+                nextSibling[i] = firstRoot;
+                firstRoot = i;
+            } else {
+                nextSibling[i] = firstChild[parent];
+                firstChild[parent] = i;
+            }
+        }
+
+        int[] stack = new int[jointsCount + 1];
+        int depth = 0;
+        stack[0] = firstRoot;
+        while(depth>=0) {
+            int joint = stack[depth];
+            if(joint<0) {
+                // all children of the node one level up are written
+                if(depth>0) indent(depth).append("</node>\n");
+                depth--;
+                if(depth>=0) stack[depth] = nextSibling[stack[depth]];
+                continue;
+            }
+            Joint value = joints.get(joint);
+            indent(depth+1).append("<node name=\"").append(value.getName()).append("\" id=\"").append(meshName).append("-joint").append(joint)
+              .append("\" sid=\"joint").append(joint).append("\" type=\"JOINT\">\n");
+            indent(depth+2).append("<matrix sid=\"transform\">");
+            appendMatrix(value.getTransform()).append("</matrix>\n");
+            stack[++depth] = firstChild[joint];
+            flushIfFull();
+        }
+    }
+
+    private StringBuilder indent(int depth) {
+        for(int i=0; i<depth+3; ++i) {
+            sb.append("  ");
+        }
+        return sb;
+    }
+
+    public void beginScene() {
+        sb.append("  <scene>\n");
+    }
+
+    public void writeInstanceVisualScene(String meshName) throws IOException {
+        sb.append("    <instance_visual_scene url=\"#").append(meshName).append("\"></instance_visual_scene>\n");
+        flushIfFull();
+    }
+
+    public void endScene() {
+        sb.append("  </scene>\n");
+    }
+
+    public void writeFooter() {
+        sb.append("</COLLADA>\n");
+    }
+
+    private StringBuilder appendFloat(float value) {
+        return FloatFormatter.append(sb, value, FLOATS_DECIMALS);
+    }
+
+    private StringBuilder appendMatrix(float[] matrix) {
+        for(int i=0; i<16; ++i) {
+            if(i>0) sb.append(" ");
+            appendFloat(matrix[i]);
+        }
+        return sb;
+    }
+
+    private void appendColor(float[] color) {
+        appendFloat(color[0]).append("  ");
+        appendFloat(color[1]).append(" ");
+        appendFloat(color[2]).append(" ");
+        appendFloat(color[3]);
+    }
+
+    private void flushIfFull() throws IOException {
+        if (sb.length() >= BUFFER_SIZE) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        int length = sb.length();
+        char[] target = length <= chars.length ? chars : new char[length];
+        sb.getChars(0, length, target, 0);
+        writer.write(target, 0, length);
+        sb.setLength(0);
+    }
+
+    public void flush() throws IOException {
+        flushBuffer();
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+        } finally {
+            writer.close();
+        }
+    }
+}
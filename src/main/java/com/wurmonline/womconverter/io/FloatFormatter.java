@@ -0,0 +1,81 @@
+package com.wurmonline.womconverter.io;
+
+import java.util.Locale;
+
+/**
+ * Fixed-precision float formatting without the overhead of {@link String#format}.
+ * Produces the same text as {@code String.format(Locale.ROOT, "%.Nf", value)}: the value is
+ * rounded half-up to the requested number of decimals and negative values keep their sign
+ * even when they round to zero.
+ */
+public final class FloatFormatter {
+
+    private static final int MAX_DECIMALS = 9;
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L
+    };
+    /**
+     * Largest binary exponent for which the scaled integer still fits in a long.
+     */
+    private static final int MAX_LEFT_SHIFT = 63 - 24 - 30;
+
+    private FloatFormatter() {
+    }
+
+    public static String format(float value, int decimals) {
+        return append(new StringBuilder(16), value, decimals).toString();
+    }
+
+    public static StringBuilder append(StringBuilder sb, float value, int decimals) {
+        if (decimals < 0 || decimals > MAX_DECIMALS) {
+            throw new IllegalArgumentException("Unsupported number of decimals: " + decimals);
+        }
+        if (Float.isNaN(value)) {
+            return sb.append("NaN");
+        } else if (Float.isInfinite(value)) {
+            return sb.append(value > 0 ? "Infinity" : "-Infinity");
+        }
+
+        int bits = Float.floatToRawIntBits(value);
+        int exponent = (bits >>> 23) & 0xff;
+        long mantissa = bits & 0x7fffff;
+        if (exponent == 0) {
+            exponent = 1;
+        } else {
+            mantissa |= 0x800000;
+        }
+        // |value| = mantissa * 2^-shift
+        int shift = 150 - exponent;
+        if (shift < -MAX_LEFT_SHIFT) {
+            // far beyond any model coordinate, keep the exact behaviour of the formatter
+            return sb.append(String.format(Locale.ROOT, "%." + decimals + "f", value));
+        }
+
+        long scale = POWERS_OF_TEN[decimals];
+        long scaled;
+        if (shift <= 0) {
+            scaled = (mantissa << -shift) * scale;
+        } else if (shift >= 63) {
+            scaled = 0;
+        } else {
+            long product = mantissa * scale;
+            scaled = product >>> shift;
+            if ((product & (1L << (shift - 1))) != 0) {
+                scaled++;
+            }
+        }
+
+        if (bits < 0) {
+            sb.append('-');
+        }
+        sb.append(scaled / scale);
+        if (decimals > 0) {
+            sb.append('.');
+            long fraction = scaled % scale;
+            for (long power = scale / 10; power > 0; power /= 10) {
+                sb.append((char) ('0' + fraction / power % 10));
+            }
+        }
+        return sb;
+    }
+}
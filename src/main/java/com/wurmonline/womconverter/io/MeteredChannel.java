@@ -0,0 +1,62 @@
+package com.wurmonline.womconverter.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Channel counting bytes written and time spent in the underlying channel, including opening
+ * and closing it, so the time of the writers can be split into encoding and I/O.
+ */
+public class MeteredChannel implements WritableByteChannel {
+
+    private final WritableByteChannel channel;
+    private long bytes;
+    private long nanos;
+
+    public MeteredChannel(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Opens the file for writing, truncating existing content, like {@link WomWriter#open(File)}.
+     */
+    public static MeteredChannel open(File file) throws IOException {
+        long start = System.nanoTime();
+        MeteredChannel channel = new MeteredChannel(FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+        channel.nanos = System.nanoTime() - start;
+        return channel;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        long start = System.nanoTime();
+        int written = channel.write(src);
+        nanos += System.nanoTime() - start;
+        bytes += written;
+        return written;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        long start = System.nanoTime();
+        channel.close();
+        nanos += System.nanoTime() - start;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+}
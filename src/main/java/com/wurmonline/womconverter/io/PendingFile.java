@@ -0,0 +1,39 @@
+package com.wurmonline.womconverter.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Output file written under a temporary name next to its target and moved into place only once
+ * complete, so a failed conversion never leaves a truncated file behind or damages the previous one.
+ */
+public class PendingFile implements AutoCloseable {
+
+    private final File target;
+    private final File temporary;
+    private boolean committed = false;
+
+    public PendingFile(File target) {
+        this.target = target;
+        this.temporary = new File(target.getParentFile(), target.getName() + ".part");
+    }
+
+    public File getTemporaryFile() {
+        return temporary;
+    }
+
+    public void commit() throws IOException {
+        Files.move(temporary.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        committed = true;
+    }
+
+    /**
+     * Deletes the temporary file unless it was committed.
+     */
+    @Override
+    public void close() {
+        if (!committed) temporary.delete();
+    }
+}
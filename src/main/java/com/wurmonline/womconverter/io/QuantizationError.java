@@ -0,0 +1,38 @@
+package com.wurmonline.womconverter.io;
+
+/**
+ * Largest differences between the attributes of a mesh and their values decoded from a compact WOM file.
+ */
+public class QuantizationError {
+
+    private final float positionError;
+    private final float directionError;
+    private final float uvError;
+
+    public QuantizationError(float positionError, float directionError, float uvError) {
+        this.positionError = positionError;
+        this.directionError = directionError;
+        this.uvError = uvError;
+    }
+
+    /**
+     * Distance between an original and a decoded position, in model units.
+     */
+    public float getPositionError() {
+        return positionError;
+    }
+
+    /**
+     * Angle between an original and a decoded normal, tangent or binormal, in degrees.
+     */
+    public float getDirectionError() {
+        return directionError;
+    }
+
+    /**
+     * Difference in a single UV coordinate.
+     */
+    public float getUvError() {
+        return uvError;
+    }
+}
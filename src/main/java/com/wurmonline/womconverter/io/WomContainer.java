@@ -0,0 +1,214 @@
+package com.wurmonline.womconverter.io;
+
+import com.wurmonline.womconverter.model.Model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compressed container of a WOM file. The WOM data is cut into blocks that are deflated
+ * independently: the file header, one block per mesh with its materials, and the joints and
+ * skinning trailer. Blocks are compressed and inflated in parallel. Readers inflate the whole
+ * container into the original WOM data, as the DAE export needs the materials and skins of all
+ * meshes before their geometry.
+ * <p>
+ * The container starts with a marker int, the version and the blocks count, followed by the
+ * uncompressed and stored size of each block and then the blocks themselves. A block whose
+ * stored size equals its uncompressed size is stored as is, because deflating did not shrink it.
+ * Sizes read from the header are checked against the data and the ratio deflate can reach before
+ * anything is allocated for them, so corrupt headers are reported as {@link IOException}s.
+ */
+public class WomContainer {
+
+    /**
+     * The bytes 'W' 'O' 'M' 0xD0 in file order, negative like the compact marker.
+     */
+    static final int MAGIC = 0xD04D4F57;
+    static final int VERSION = 1;
+
+    /**
+     * Upper bound of the deflate compression ratio, a stored block can't inflate to more than this times its size.
+     */
+    private static final int MAX_DEFLATE_RATIO = 1032;
+
+    private final ByteBuffer buffer;
+    private final int[] sizes;
+    private final int[] storedSizes;
+    private final int[] offsets;
+
+    public WomContainer(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        WomReader header = new WomReader(this.buffer);
+        if (header.readInt() != MAGIC) {
+            throw new IOException("Not a compressed WOM container");
+        }
+        int version = header.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported WOM container version: " + version);
+        }
+        int blocksCount = header.readInt();
+        if (blocksCount < 2 || (long) blocksCount * 8 > header.remaining()) {
+            throw new IOException("Invalid blocks count: " + blocksCount);
+        }
+        sizes = new int[blocksCount];
+        storedSizes = new int[blocksCount];
+        offsets = new int[blocksCount];
+        for (int i = 0; i < blocksCount; i++) {
+            sizes[i] = header.readInt();
+            storedSizes[i] = header.readInt();
+            if (sizes[i] < 0 || storedSizes[i] < 0 || storedSizes[i] > sizes[i]
+                    || sizes[i] > (long) storedSizes[i] * MAX_DEFLATE_RATIO + 64) {
+                throw new IOException("Invalid size of block " + i + ": " + storedSizes[i] + " of " + sizes[i] + " bytes");
+            }
+        }
+        long offset = header.position();
+        for (int i = 0; i < blocksCount; i++) {
+            offsets[i] = (int) offset;
+            offset += storedSizes[i];
+            if (offset > this.buffer.limit()) {
+                throw new IOException("Block " + i + " of WOM container ends at " + offset + ", after the end of the data at " + this.buffer.limit());
+            }
+        }
+        header.skip(offset - header.position());
+    }
+
+    public static boolean isContainer(ByteBuffer buffer) {
+        return buffer.remaining() >= 4 && buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN).getInt() == MAGIC;
+    }
+
+    /**
+     * Inflates all blocks in parallel into the original WOM data.
+     */
+    public ByteBuffer inflate() throws IOException {
+        int[] targetOffsets = new int[sizes.length];
+        long total = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            targetOffsets[i] = (int) total;
+            total += sizes[i];
+        }
+        if (total > Integer.MAX_VALUE) {
+            throw new IOException("WOM container too large: " + total + " bytes");
+        }
+        ByteBuffer target = ByteBuffer.allocate((int) total);
+        try {
+            IntStream.range(0, sizes.length).parallel().forEach(i -> {
+                try {
+                    ByteBuffer block = target.duplicate();
+                    block.position(targetOffsets[i]);
+                    inflate(i, block.slice());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return target;
+    }
+
+    /**
+     * Inflates a block into the target starting at its position, which is left unchanged.
+     */
+    private void inflate(int index, ByteBuffer target) throws IOException {
+        ByteBuffer stored = buffer.duplicate();
+        stored.position(offsets[index]);
+        stored.limit(offsets[index] + storedSizes[index]);
+        byte[] source = new byte[storedSizes[index]];
+        stored.get(source);
+        if (storedSizes[index] == sizes[index]) {
+            target.duplicate().put(source);
+            return;
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(source);
+            int length = inflater.inflate(target.array(), target.arrayOffset() + target.position(), sizes[index]);
+            if (length != sizes[index] || !inflater.finished()) {
+                throw new IOException("Corrupt block " + index + " of WOM container");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt block " + index + " of WOM container", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Serializes the model and deflates its blocks in parallel, then writes the container to the channel.
+     */
+    public static void write(Model model, boolean compact, WritableByteChannel channel) throws IOException {
+        int meshesCount = model.getMeshes().size();
+        byte[][] blocks = new byte[meshesCount + 2][];
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        WomWriter writer = new WomWriter(Channels.newChannel(bytes), compact);
+        writer.writeHeader(meshesCount);
+        blocks[0] = takeBytes(writer, bytes);
+        ByteBuffer[] records = WomWriter.encodeMeshRecords(model.getMeshes(), compact);
+        for (int i = 0; i < meshesCount; i++) {
+            blocks[i + 1] = Arrays.copyOf(records[i].array(), records[i].limit());
+        }
+        writer.writeTrailer(model);
+        blocks[meshesCount + 1] = takeBytes(writer, bytes);
+
+        byte[][] storedBlocks = new byte[blocks.length][];
+        IntStream.range(0, blocks.length).parallel().forEach(i -> storedBlocks[i] = deflate(blocks[i]));
+
+        ByteBuffer header = ByteBuffer.allocate(12 + blocks.length * 8).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(blocks.length);
+        for (int i = 0; i < blocks.length; i++) {
+            header.putInt(blocks[i].length).putInt(storedBlocks[i].length);
+        }
+        header.flip();
+        writeFully(channel, header);
+        for (byte[] block : storedBlocks) {
+            writeFully(channel, ByteBuffer.wrap(block));
+        }
+    }
+
+    private static byte[] takeBytes(WomWriter writer, ByteArrayOutputStream bytes) throws IOException {
+        writer.flush();
+        byte[] block = bytes.toByteArray();
+        bytes.reset();
+        return block;
+    }
+
+    /**
+     * Deflates a block, returning it unchanged when deflating does not make it smaller.
+     */
+    private static byte[] deflate(byte[] block) {
+        Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(block);
+            deflater.finish();
+            byte[] output = new byte[block.length];
+            int length = 0;
+            while (!deflater.finished() && length < output.length) {
+                length += deflater.deflate(output, length, output.length - length);
+            }
+            if (!deflater.finished() || length >= block.length) {
+                return block;
+            }
+            byte[] stored = new byte[length];
+            System.arraycopy(output, 0, stored, 0, length);
+            return stored;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.wurmonline.womconverter.io;
+
+import com.wurmonline.womconverter.model.Joint;
+import com.wurmonline.womconverter.model.Material;
+import com.wurmonline.womconverter.model.Skin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.List;
+
+/**
+ * Checks the structure of WOM files without building meshes. The inspector walks the file from
+ * block to block using the counts and attribute flags of the mesh headers, and only looks into a
+ * block for the checks that need it: floats of plain vertex blocks for NaN and infinite values, and
+ * indices for being within the vertices of their mesh. Compact vertex blocks are skipped, as their
+ * 16-bit values are always valid. Truncated files, invalid counts and bytes left after the skinning
+ * section are reported as well.
+ */
+public final class WomInspector {
+
+    private WomInspector() {
+    }
+
+    /**
+     * Inspects a file. Read errors, and runtime exceptions caused by corrupt data, are reported as problems
+     * instead of being thrown.
+     */
+    public static WomReport inspect(File file) {
+        WomReport report = new WomReport();
+        ByteBuffer buffer;
+        try {
+            buffer = WomReader.map(file);
+        } catch (IOException e) {
+            report.addProblem("Cannot read file: " + e.getMessage());
+            return report;
+        }
+        inspect(buffer, report);
+        return report;
+    }
+
+    public static WomReport inspect(ByteBuffer buffer) {
+        WomReport report = new WomReport();
+        inspect(buffer, report);
+        return report;
+    }
+
+    private static void inspect(ByteBuffer buffer, WomReport report) {
+        try {
+            if (WomContainer.isContainer(buffer)) {
+                report.setCompressed(true);
+                buffer = new WomContainer(buffer).inflate();
+            }
+            WomReader reader = new WomReader(buffer);
+            int meshesCount = reader.readModelHeader();
+            report.setCompact(reader.isCompact());
+            for (int i = 0; i < meshesCount; i++) {
+                inspectMesh(reader, report);
+            }
+
+            List<Joint> joints = reader.readJoints();
+            report.setJointsCount(joints.size());
+            for (WomReport.MeshSummary mesh : report.getMeshes()) {
+                Skin skin = reader.readSkin(mesh.getVerticesCount(), joints.size());
+                if (skin == null) continue;
+                mesh.setSkinned(true);
+                int invalid = firstNonFinite(FloatBuffer.wrap(skin.getWeights()));
+                if (invalid >= 0) {
+                    report.addProblem("Mesh " + mesh.getName() + ": skin weight " + invalid + " is " + skin.getWeights()[invalid]);
+                }
+            }
+            if (reader.remaining() > 0) {
+                report.addProblem(reader.remaining() + " unexpected bytes after the skinning section at offset " + reader.position());
+            }
+        } catch (IOException e) {
+            report.addProblem(e.getMessage());
+        } catch (RuntimeException e) {
+            report.addProblem("Corrupt WOM data: " + e);
+        }
+    }
+
+    /**
+     * Checks the next mesh with its materials and adds its summary to the report.
+     */
+    private static void inspectMesh(WomReader reader, WomReport report) throws IOException {
+        boolean hasTangents = reader.readBoolean();
+        boolean hasBinormal = reader.readBoolean();
+        boolean hasVertexColor = reader.readBoolean();
+        String name = reader.readString();
+        int verticesCount = reader.readInt();
+        if (verticesCount < 0) {
+            throw new IOException("Mesh " + name + ": invalid vertices count " + verticesCount);
+        }
+
+        if (reader.isCompact()) {
+            FloatBuffer bounds = reader.readFloats(10);
+            int invalid = firstNonFinite(bounds);
+            if (invalid >= 0) {
+                report.addProblem("Mesh " + name + ": bound " + invalid + " is " + bounds.get(invalid));
+            }
+            reader.skip((long) verticesCount * CompactEncoding.vertexSize(hasVertexColor, hasTangents, hasBinormal) * 2);
+        } else {
+            int vertexSize = WomWriter.vertexSize(hasVertexColor, hasTangents, hasBinormal);
+            if ((long) verticesCount * vertexSize > Integer.MAX_VALUE / 4) {
+                throw new IOException("Mesh " + name + ": invalid vertices count " + verticesCount);
+            }
+            FloatBuffer vertices = reader.readFloats(verticesCount * vertexSize);
+            int invalid = firstNonFinite(vertices);
+            if (invalid >= 0) {
+                report.addProblem("Mesh " + name + ": vertex " + invalid / vertexSize + " has the value " + vertices.get(invalid));
+            }
+        }
+
+        int indicesCount = reader.readInt();
+        if (indicesCount < 0) {
+            throw new IOException("Mesh " + name + ": invalid indices count " + indicesCount);
+        }
+        if (indicesCount % 3 != 0) {
+            report.addProblem("Mesh " + name + ": indices count " + indicesCount + " is not a multiple of 3");
+        }
+        ShortBuffer indices = reader.readShorts(indicesCount);
+        int outOfBounds = 0;
+        int first = -1;
+        for (int i = 0; i < indicesCount; i++) {
+            int index = indices.get(i);
+            if (index < 0 || index >= verticesCount) {
+                if (outOfBounds++ == 0) first = i;
+            }
+        }
+        if (outOfBounds > 0) {
+            report.addProblem("Mesh " + name + ": " + outOfBounds + " indices out of bounds of " + verticesCount + " vertices, first "
+                    + indices.get(first) + " at " + first);
+        }
+
+        WomReport.MeshSummary mesh = new WomReport.MeshSummary(name, hasTangents, hasBinormal, hasVertexColor, verticesCount, indicesCount / 3);
+        int materialsCount = reader.readInt();
+        if (materialsCount < 0) {
+            throw new IOException("Mesh " + name + ": invalid materials count " + materialsCount);
+        }
+        for (int i = 0; i < materialsCount; i++) {
+            Material material = reader.readMaterial();
+            mesh.getMaterials().add(material.getMaterialName() + " -> " + material.getTextureName());
+        }
+        report.addMesh(mesh);
+    }
+
+    /**
+     * Index of the first NaN or infinite value, or -1.
+     */
+    private static int firstNonFinite(FloatBuffer values) {
+        for (int i = 0; i < values.limit(); i++) {
+            if (!Float.isFinite(values.get(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
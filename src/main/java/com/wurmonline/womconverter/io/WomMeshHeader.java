@@ -0,0 +1,97 @@
+package com.wurmonline.womconverter.io;
+
+/**
+ * Header of a mesh record in a WOM file together with the offsets of its vertex and
+ * index blocks, so the blocks can be decoded later or skipped altogether.
+ */
+public class WomMeshHeader {
+
+    private final String name;
+    private final boolean hasTangents;
+    private final boolean hasBinormal;
+    private final boolean hasVertexColor;
+    private final int verticesCount;
+    private final int indicesCount;
+    private final int verticesOffset;
+    private final int indicesOffset;
+    private final float[] bounds;
+
+    WomMeshHeader(String name, boolean hasTangents, boolean hasBinormal, boolean hasVertexColor, int verticesCount, int indicesCount, int verticesOffset, int indicesOffset) {
+        this(name, hasTangents, hasBinormal, hasVertexColor, verticesCount, indicesCount, verticesOffset, indicesOffset, null);
+    }
+
+    WomMeshHeader(String name, boolean hasTangents, boolean hasBinormal, boolean hasVertexColor, int verticesCount, int indicesCount, int verticesOffset, int indicesOffset, float[] bounds) {
+        this.name = name;
+        this.hasTangents = hasTangents;
+        this.hasBinormal = hasBinormal;
+        this.hasVertexColor = hasVertexColor;
+        this.verticesCount = verticesCount;
+        this.indicesCount = indicesCount;
+        this.verticesOffset = verticesOffset;
+        this.indicesOffset = indicesOffset;
+        this.bounds = bounds;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean hasTangents() {
+        return hasTangents;
+    }
+
+    public boolean hasBinormal() {
+        return hasBinormal;
+    }
+
+    public boolean hasVertexColor() {
+        return hasVertexColor;
+    }
+
+    public int getVerticesCount() {
+        return verticesCount;
+    }
+
+    /**
+     * Number of indices stored in the file, always a multiple of three.
+     */
+    public int getIndicesCount() {
+        return indicesCount;
+    }
+
+    public int getTrianglesCount() {
+        return indicesCount / 3;
+    }
+
+    /**
+     * Whether the vertex block is quantized, see {@link CompactEncoding}.
+     */
+    public boolean isCompact() {
+        return bounds != null;
+    }
+
+    /**
+     * Number of values per vertex in the vertex block, floats or 16-bit values in compact files.
+     */
+    public int getVertexSize() {
+        if (isCompact()) {
+            return CompactEncoding.vertexSize(hasVertexColor, hasTangents, hasBinormal);
+        }
+        return WomWriter.vertexSize(hasVertexColor, hasTangents, hasBinormal);
+    }
+
+    /**
+     * Bounds of positions followed by bounds of UVs of a compact mesh, minimums before maximums.
+     */
+    float[] getBounds() {
+        return bounds;
+    }
+
+    public int getVerticesOffset() {
+        return verticesOffset;
+    }
+
+    public int getIndicesOffset() {
+        return indicesOffset;
+    }
+}
@@ -0,0 +1,426 @@
+package com.wurmonline.womconverter.io;
+
+import com.wurmonline.womconverter.model.Joint;
+import com.wurmonline.womconverter.model.Material;
+import com.wurmonline.womconverter.model.Mesh;
+import com.wurmonline.womconverter.model.Model;
+import com.wurmonline.womconverter.model.Skin;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Little-endian reader for WOM files. Files are memory-mapped, and vertex and index
+ * blocks are exposed as {@link FloatBuffer} and {@link ShortBuffer} views of the mapping
+ * instead of being copied. Compact files are recognized by {@link #readModelHeader()} and their
+ * vertices are decoded to floats.
+ */
+public class WomReader {
+
+    private final ByteBuffer buffer;
+    private boolean compact = false;
+
+    public WomReader(ByteBuffer buffer) {
+        this.buffer = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Maps the file, inflating it first when it is a {@link WomContainer}.
+     */
+    public static WomReader open(File file) throws IOException {
+        return open(map(file));
+    }
+
+    static ByteBuffer map(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Reads the WOM data in the buffer, inflating it first when it is a {@link WomContainer}.
+     */
+    public static WomReader open(ByteBuffer buffer) throws IOException {
+        if (WomContainer.isContainer(buffer)) {
+            return new WomReader(new WomContainer(buffer).inflate());
+        }
+        return new WomReader(buffer);
+    }
+
+    /**
+     * Reads the whole model with its skeleton and skins.
+     */
+    public Model readModel() throws IOException {
+        Model model = new Model();
+        int meshesCount = readModelHeader();
+        for (int i = 0; i < meshesCount; i++) {
+            model.addMesh(readMeshRecord());
+        }
+
+        readJoints().forEach(model::addJoint);
+        for (Mesh mesh : model.getMeshes()) {
+            mesh.setSkin(readSkin(mesh.getVerticesCount(), model.getJoints().size()));
+        }
+        return model;
+    }
+
+    /**
+     * Reads the joints section that follows the meshes, see {@link WomWriter#writeTrailer(Model)}.
+     */
+    public List<Joint> readJoints() throws IOException {
+        int jointsCount = readInt();
+        if (jointsCount < 0 || jointsCount > Short.MAX_VALUE + 1) {
+            throw new IOException("Invalid joints count: " + jointsCount);
+        }
+        List<Joint> joints = new ArrayList<>(jointsCount);
+        for (int i = 0; i < jointsCount; i++) {
+            String name = readString();
+            int parent = readInt();
+            if (parent < -1 || parent >= i) {
+                throw new IOException("Invalid parent of joint " + name + ": " + parent);
+            }
+            joints.add(new Joint(name, parent, readMatrix(), readMatrix()));
+        }
+        return joints;
+    }
+
+    /**
+     * Reads the skinning flag of a mesh and its weights, returning {@code null} for meshes without skinning.
+     */
+    public Skin readSkin(int verticesCount, int jointsCount) throws IOException {
+        if (!readBoolean()) {
+            return null;
+        }
+        int weightsCount = readInt();
+        ShortBuffer counts = readShorts(verticesCount);
+        ShortBuffer jointsBuffer = readShorts(weightsCount);
+        FloatBuffer weightsBuffer = readFloats(weightsCount);
+
+        int[] offsets = new int[verticesCount + 1];
+        for (int v = 0; v < verticesCount; v++) {
+            offsets[v + 1] = offsets[v] + (counts.get(v) & 0xFFFF);
+        }
+        if (offsets[verticesCount] != weightsCount) {
+            throw new IOException("Skin influences of " + offsets[verticesCount] + " do not match the weights count " + weightsCount);
+        }
+        int[] joints = new int[weightsCount];
+        for (int i = 0; i < weightsCount; i++) {
+            joints[i] = jointsBuffer.get(i);
+            if (joints[i] < 0 || joints[i] >= jointsCount) {
+                throw new IOException("Invalid skin joint index: " + joints[i] + " of " + jointsCount);
+            }
+        }
+        float[] weights = new float[weightsCount];
+        weightsBuffer.get(weights);
+        return new Skin(offsets, joints, weights);
+    }
+
+    private float[] readMatrix() throws IOException {
+        float[] matrix = new float[16];
+        readFloats(16).get(matrix);
+        return matrix;
+    }
+
+    /**
+     * Reads the start of the file, detecting the compact variant, and returns the meshes count.
+     */
+    public int readModelHeader() throws IOException {
+        int meshesCount = readInt();
+        compact = meshesCount == CompactEncoding.MAGIC;
+        if (compact) {
+            int version = readInt();
+            if (version != CompactEncoding.VERSION) {
+                throw new IOException("Unsupported compact WOM version: " + version);
+            }
+            meshesCount = readInt();
+        }
+        if (meshesCount < 0) {
+            throw new IOException("Invalid meshes count: " + meshesCount);
+        }
+        return meshesCount;
+    }
+
+    public boolean isCompact() {
+        return compact;
+    }
+
+    /**
+     * Reads a mesh together with the materials that follow it.
+     */
+    public Mesh readMeshRecord() throws IOException {
+        Mesh mesh = readMesh();
+        Material[] materials = new Material[readInt()];
+        for (int j = 0; j < materials.length; j++) {
+            materials[j] = readMaterial();
+        }
+        mesh.setMaterials(materials);
+        return mesh;
+    }
+
+    public Mesh readMesh() throws IOException {
+        return readMesh(readMeshHeader());
+    }
+
+    /**
+     * Reads the header of the next mesh and moves past its vertex and index blocks without decoding them.
+     */
+    public WomMeshHeader readMeshHeader() throws IOException {
+        boolean hasTangents = readBoolean();
+        boolean hasBinormal = readBoolean();
+        boolean hasVertexColor = readBoolean();
+        String name = readString();
+
+        int verticesCount = readInt();
+        if (verticesCount < 0) {
+            throw new IOException("Invalid vertices count: " + verticesCount);
+        }
+        float[] bounds = null;
+        long vertexBytes = WomWriter.vertexSize(hasVertexColor, hasTangents, hasBinormal) * 4;
+        if (compact) {
+            bounds = new float[10];
+            for (int i = 0; i < bounds.length; i++) {
+                bounds[i] = readFloat();
+            }
+            vertexBytes = CompactEncoding.vertexSize(hasVertexColor, hasTangents, hasBinormal) * 2;
+        }
+        int verticesOffset = position();
+        skip(verticesCount * vertexBytes);
+
+        int indicesCount = readInt();
+        if (indicesCount < 0) {
+            throw new IOException("Invalid indices count: " + indicesCount);
+        }
+        indicesCount = indicesCount / 3 * 3;
+        int indicesOffset = position();
+        skip((long) indicesCount * 2);
+
+        return new WomMeshHeader(name, hasTangents, hasBinormal, hasVertexColor, verticesCount, indicesCount, verticesOffset, indicesOffset, bounds);
+    }
+
+    /**
+     * Decodes the vertex and index blocks of a mesh read earlier with {@link #readMeshHeader()}.
+     * The reader position is not changed.
+     */
+    public Mesh readMesh(WomMeshHeader header) {
+        if (header.isCompact()) {
+            return readCompactMesh(header);
+        }
+        boolean hasTangents = header.hasTangents();
+        boolean hasBinormal = header.hasBinormal();
+        boolean hasVertexColor = header.hasVertexColor();
+        int verticesCount = header.getVerticesCount();
+        int vertexSize = header.getVertexSize();
+        FloatBuffer vertices = view(header.getVerticesOffset(), verticesCount * vertexSize * 4).asFloatBuffer();
+
+        Mesh mesh = new Mesh(header.getName(), verticesCount, hasVertexColor, hasTangents, hasBinormal);
+        float[] positions = mesh.getPositions();
+        float[] normals = mesh.getNormals();
+        float[] uvs = mesh.getUvs();
+        float[] colors = mesh.getColors();
+        float[] tangents = mesh.getTangents();
+        float[] binormals = mesh.getBinormals();
+        for (int i = 0; i < verticesCount; i++) {
+            int offset = i * vertexSize;
+            int i3 = i * 3;
+            positions[i3] = vertices.get(offset++);
+            positions[i3 + 1] = vertices.get(offset++);
+            positions[i3 + 2] = vertices.get(offset++);
+            normals[i3] = vertices.get(offset++);
+            normals[i3 + 1] = vertices.get(offset++);
+            normals[i3 + 2] = vertices.get(offset++);
+            uvs[i * 2] = vertices.get(offset++);
+            uvs[i * 2 + 1] = 1 - vertices.get(offset++);
+            if (hasVertexColor) {
+                colors[i3] = vertices.get(offset++);
+                colors[i3 + 1] = vertices.get(offset++);
+                colors[i3 + 2] = vertices.get(offset++);
+            }
+            if (hasTangents) {
+                tangents[i3] = vertices.get(offset++);
+                tangents[i3 + 1] = vertices.get(offset++);
+                tangents[i3 + 2] = vertices.get(offset++);
+            }
+            if (hasBinormal) {
+                binormals[i3] = vertices.get(offset++);
+                binormals[i3 + 1] = vertices.get(offset++);
+                binormals[i3 + 2] = vertices.get(offset);
+            }
+        }
+
+        readIndices(header, mesh);
+        return mesh;
+    }
+
+    private Mesh readCompactMesh(WomMeshHeader header) {
+        int verticesCount = header.getVerticesCount();
+        int vertexSize = header.getVertexSize();
+        float[] bounds = header.getBounds();
+        ShortBuffer vertices = view(header.getVerticesOffset(), verticesCount * vertexSize * 2).asShortBuffer();
+
+        Mesh mesh = new Mesh(header.getName(), verticesCount, header.hasVertexColor(), header.hasTangents(), header.hasBinormal());
+        float[] positions = mesh.getPositions();
+        float[] normals = mesh.getNormals();
+        float[] uvs = mesh.getUvs();
+        float[] colors = mesh.getColors();
+        float[] tangents = mesh.getTangents();
+        float[] binormals = mesh.getBinormals();
+        for (int i = 0; i < verticesCount; i++) {
+            int offset = i * vertexSize;
+            int i3 = i * 3;
+            for (int axis = 0; axis < 3; axis++) {
+                positions[i3 + axis] = CompactEncoding.decodeUnorm(vertices.get(offset++), bounds[axis], bounds[3 + axis]);
+            }
+            CompactEncoding.decodeDirection(vertices.get(offset++), vertices.get(offset++), normals, i3);
+            uvs[i * 2] = CompactEncoding.decodeUnorm(vertices.get(offset++), bounds[6], bounds[8]);
+            uvs[i * 2 + 1] = 1 - CompactEncoding.decodeUnorm(vertices.get(offset++), bounds[7], bounds[9]);
+            if (colors != null) {
+                for (int component = 0; component < 3; component++) {
+                    colors[i3 + component] = CompactEncoding.decodeUnorm(vertices.get(offset++), 0, 1);
+                }
+            }
+            if (tangents != null) {
+                CompactEncoding.decodeDirection(vertices.get(offset++), vertices.get(offset++), tangents, i3);
+            }
+            if (binormals != null) {
+                CompactEncoding.decodeDirection(vertices.get(offset++), vertices.get(offset), binormals, i3);
+            }
+        }
+
+        readIndices(header, mesh);
+        return mesh;
+    }
+
+    private void readIndices(WomMeshHeader header, Mesh mesh) {
+        ShortBuffer indicesBuffer = view(header.getIndicesOffset(), header.getIndicesCount() * 2).asShortBuffer();
+        int[] indices = new int[header.getIndicesCount()];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = indicesBuffer.get(i);
+        }
+        mesh.setIndices(indices);
+    }
+
+    public Material readMaterial() throws IOException {
+        Material material = new Material(readString(), readString());
+        boolean isEnabled = readBoolean();
+        boolean propertyExists = readBoolean();
+        readColor(material.getEmissive());
+        propertyExists = readBoolean();
+        material.setShininess(readFloat());
+        propertyExists = readBoolean();
+        readColor(material.getSpecular());
+        propertyExists = readBoolean();
+        readColor(material.getTransparency());
+        return material;
+    }
+
+    private void readColor(float[] color) throws IOException {
+        require(16);
+        color[0] = buffer.getFloat();
+        color[1] = buffer.getFloat();
+        color[2] = buffer.getFloat();
+        color[3] = buffer.getFloat();
+    }
+
+    public boolean readBoolean() throws IOException {
+        require(1);
+        return buffer.get() == 1;
+    }
+
+    public int readInt() throws IOException {
+        require(4);
+        return buffer.getInt();
+    }
+
+    public short readShort() throws IOException {
+        require(2);
+        return buffer.getShort();
+    }
+
+    public float readFloat() throws IOException {
+        require(4);
+        return buffer.getFloat();
+    }
+
+    public String readString() throws IOException {
+        int length = readInt();
+        if (length < 0) {
+            throw new IOException("Invalid string length: " + length);
+        }
+        require(length);
+        byte[] chars = new byte[length];
+        buffer.get(chars);
+        return new String(chars, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns a view of the next {@code count} floats and moves past them.
+     */
+    public FloatBuffer readFloats(int count) throws IOException {
+        ByteBuffer region = region(count, 4);
+        return region.asFloatBuffer();
+    }
+
+    /**
+     * Returns a view of the next {@code count} shorts and moves past them.
+     */
+    public ShortBuffer readShorts(int count) throws IOException {
+        ByteBuffer region = region(count, 2);
+        return region.asShortBuffer();
+    }
+
+    public void skip(long bytes) throws IOException {
+        require(bytes);
+        buffer.position(buffer.position() + (int) bytes);
+    }
+
+    public int position() {
+        return buffer.position();
+    }
+
+    public void position(int position) {
+        buffer.position(position);
+    }
+
+    public int remaining() {
+        return buffer.remaining();
+    }
+
+    private ByteBuffer view(int offset, int bytes) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        view = view.slice().order(ByteOrder.LITTLE_ENDIAN);
+        view.limit(bytes);
+        return view;
+    }
+
+    private ByteBuffer region(int count, int elementSize) throws IOException {
+        if (count < 0) {
+            throw new IOException("Invalid element count: " + count);
+        }
+        long bytes = (long) count * elementSize;
+        require(bytes);
+        ByteBuffer region = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        region.limit((int) bytes);
+        buffer.position(buffer.position() + (int) bytes);
+        return region;
+    }
+
+    private void require(long bytes) throws IOException {
+        if (bytes < 0) {
+            throw new IOException("Invalid byte count at offset " + buffer.position() + ": " + bytes);
+        }
+        if (bytes > buffer.remaining()) {
+            throw new EOFException("Unexpected end of WOM data at offset " + buffer.position() + ", " + bytes + " bytes needed, " + buffer.remaining() + " left");
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.wurmonline.womconverter.io;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Structure of a WOM file found by {@link WomInspector}, with the problems that make it invalid.
+ * Meshes are listed up to the first problem that stops the inspection.
+ */
+public class WomReport {
+
+    /**
+     * Header values of a mesh and the names of its materials.
+     */
+    public static class MeshSummary {
+        private final String name;
+        private final boolean hasTangents;
+        private final boolean hasBinormal;
+        private final boolean hasVertexColor;
+        private final int verticesCount;
+        private final int trianglesCount;
+        private final List<String> materials = new ArrayList<>();
+        private boolean skinned = false;
+
+        MeshSummary(String name, boolean hasTangents, boolean hasBinormal, boolean hasVertexColor, int verticesCount, int trianglesCount) {
+            this.name = name;
+            this.hasTangents = hasTangents;
+            this.hasBinormal = hasBinormal;
+            this.hasVertexColor = hasVertexColor;
+            this.verticesCount = verticesCount;
+            this.trianglesCount = trianglesCount;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean hasTangents() {
+            return hasTangents;
+        }
+
+        public boolean hasBinormal() {
+            return hasBinormal;
+        }
+
+        public boolean hasVertexColor() {
+            return hasVertexColor;
+        }
+
+        public int getVerticesCount() {
+            return verticesCount;
+        }
+
+        public int getTrianglesCount() {
+            return trianglesCount;
+        }
+
+        /**
+         * Materials as {@code material -> texture}.
+         */
+        public List<String> getMaterials() {
+            return materials;
+        }
+
+        public boolean isSkinned() {
+            return skinned;
+        }
+
+        void setSkinned(boolean skinned) {
+            this.skinned = skinned;
+        }
+    }
+
+    private final List<MeshSummary> meshes = new ArrayList<>();
+    private final List<String> problems = new ArrayList<>();
+    private boolean compressed = false;
+    private boolean compact = false;
+    private int jointsCount = 0;
+
+    public boolean isValid() {
+        return problems.isEmpty();
+    }
+
+    public List<String> getProblems() {
+        return Collections.unmodifiableList(problems);
+    }
+
+    public List<MeshSummary> getMeshes() {
+        return Collections.unmodifiableList(meshes);
+    }
+
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    public boolean isCompact() {
+        return compact;
+    }
+
+    public int getJointsCount() {
+        return jointsCount;
+    }
+
+    void addProblem(String problem) {
+        problems.add(problem);
+    }
+
+    void addMesh(MeshSummary mesh) {
+        meshes.add(mesh);
+    }
+
+    void setCompressed(boolean compressed) {
+        this.compressed = compressed;
+    }
+
+    void setCompact(boolean compact) {
+        this.compact = compact;
+    }
+
+    void setJointsCount(int jointsCount) {
+        this.jointsCount = jointsCount;
+    }
+}
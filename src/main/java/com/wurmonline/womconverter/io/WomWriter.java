@@ -0,0 +1,397 @@
+package com.wurmonline.womconverter.io;
+
+import com.wurmonline.womconverter.model.Joint;
+import com.wurmonline.womconverter.model.Material;
+import com.wurmonline.womconverter.model.Mesh;
+import com.wurmonline.womconverter.model.Model;
+import com.wurmonline.womconverter.model.Skin;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Little-endian writer for WOM files. Values are collected in a growing buffer and
+ * only written to the channel on {@link #flush()}, so a whole section (for example a mesh
+ * with its vertex and index blocks) ends up in a single channel write.
+ * In compact mode vertices are quantized as described in {@link CompactEncoding} and the file starts
+ * with a format marker and version instead of the mesh count.
+ * <p>
+ * Layout, with strings written as an int byte length followed by UTF-8 bytes:
+ * <pre>
+ * int meshesCount
+ * per mesh:
+ *   boolean hasTangents, boolean hasBinormal, boolean hasVertexColor (one byte each)
+ *   string name
+ *   int verticesCount
+ *   vertex block (plain mode): per vertex position[3], normal[3], uv[2], color[3]?, tangent[3]?, binormal[3]? as floats
+ *   int indicesCount, short indices[indicesCount]
+ *   int materialsCount, per material: string texture, string name, boolean enabled,
+ *     then boolean present + value for emissive float[4], shininess float, specular float[4], transparency float[4]
+ * int jointsCount
+ * per joint:
+ *   string name
+ *   int parent (index of an earlier joint, -1 for a root)
+ *   float transform[16], float inverseBindMatrix[16] (row by row)
+ * per mesh:
+ *   boolean hasSkinning
+ *   if set: int weightsCount
+ *           short influencesCount[verticesCount] (influences of each vertex, in vertex order)
+ *           short joint[weightsCount], float weight[weightsCount] (influences of vertex 0 first)
+ * </pre>
+ * The joint and skinning layout was defined by this converter and has not been checked against the game
+ * client, so converters only fill it with the experimental -skin option; otherwise jointsCount is 0 and no
+ * mesh is skinned.
+ */
+public class WomWriter implements Closeable {
+
+    private static final int DEFAULT_CAPACITY = 64 * 1024;
+
+    private final WritableByteChannel channel;
+    private final boolean compact;
+    private ByteBuffer buffer;
+
+    public WomWriter(WritableByteChannel channel) {
+        this(channel, false);
+    }
+
+    public WomWriter(WritableByteChannel channel, boolean compact) {
+        this(channel, compact, DEFAULT_CAPACITY);
+    }
+
+    private WomWriter(WritableByteChannel channel, boolean compact, int capacity) {
+        this.channel = channel;
+        this.compact = compact;
+        this.buffer = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public static WomWriter open(File file) throws IOException {
+        return new WomWriter(FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    /**
+     * Writes the whole model. Meshes are serialized in parallel by {@link #encodeMeshRecords(List, boolean)}
+     * and written in order with one channel write each, so the output is the same as serializing them one by one.
+     */
+    public void writeModel(Model model) throws IOException {
+        for (Mesh mesh : model.getMeshes()) {
+            checkIndices(mesh);
+        }
+
+        writeHeader(model.getMeshes().size());
+        flush();
+        for (ByteBuffer record : encodeMeshRecords(model.getMeshes(), compact)) {
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+        }
+        writeTrailer(model);
+        flush();
+    }
+
+    /**
+     * Serializes each mesh with its materials, as {@link #writeMeshRecord(Mesh)} does, into a buffer of its own.
+     * Meshes are serialized in parallel on the common fork-join pool, which only pays off for scenes with many
+     * or large meshes, but costs little otherwise. Buffers are returned in the order of the meshes, ready to be read.
+     */
+    public static ByteBuffer[] encodeMeshRecords(List<Mesh> meshes, boolean compact) {
+        ByteBuffer[] records = new ByteBuffer[meshes.size()];
+        IntStream.range(0, records.length).parallel().forEach(i -> {
+            Mesh mesh = meshes.get(i);
+            WomWriter writer = new WomWriter(null, compact, estimateRecordSize(mesh, compact));
+            writer.writeMeshRecord(mesh);
+            writer.buffer.flip();
+            records[i] = writer.buffer;
+        });
+        return records;
+    }
+
+    /**
+     * Size of the vertex and index blocks of a mesh with some room for its name and materials,
+     * so that most records fit their buffer without growing it.
+     */
+    private static int estimateRecordSize(Mesh mesh, boolean compact) {
+        long vertexBytes = compact
+                ? CompactEncoding.vertexSize(mesh.hasVertexColor(), mesh.hasTangents(), mesh.hasBinormal()) * 2L
+                : vertexSize(mesh.hasVertexColor(), mesh.hasTangents(), mesh.hasBinormal()) * 4L;
+        // compact meshes start with 10 float bounds
+        long size = 1024 + (compact ? 40 : 0) + mesh.getVerticesCount() * vertexBytes + mesh.getIndices().length * 2L + mesh.getMaterials().length * 256L;
+        return (int) Math.min(size, Integer.MAX_VALUE - 8);
+    }
+
+    /**
+     * Writes the start of the file: the meshes count, preceded by the format marker in compact mode.
+     */
+    public void writeHeader(int meshesCount) {
+        if (compact) {
+            writeInt(CompactEncoding.MAGIC);
+            writeInt(CompactEncoding.VERSION);
+        }
+        writeInt(meshesCount);
+    }
+
+    /**
+     * Writes a mesh followed by its materials.
+     */
+    public void writeMeshRecord(Mesh mesh) {
+        writeMesh(mesh);
+
+        Material[] materials = mesh.getMaterials();
+        writeInt(materials.length);
+        for (Material material : materials) {
+            writeMaterial(material);
+        }
+    }
+
+    /**
+     * Writes the joints and skinning sections that follow the meshes. Each joint has its name, the index
+     * of its parent or -1, its transform and its inverse bind matrix. Each mesh then has a skinning flag,
+     * followed for skinned meshes by the total number of weights, the number of influences of each vertex
+     * as shorts, and the joint index (short) and weight (float) blocks of all influences in vertex order.
+     */
+    public void writeTrailer(Model model) {
+        List<Joint> joints = model.getJoints();
+        if (joints.size() > Short.MAX_VALUE + 1) {
+            throw new IllegalArgumentException("model has too many joints and can't be represented correctly in WOM: " + joints.size());
+        }
+        writeInt(joints.size());
+        for (Joint joint : joints) {
+            writeString(joint.getName());
+            writeInt(joint.getParent());
+            writeMatrix(joint.getTransform());
+            writeMatrix(joint.getInverseBindMatrix());
+        }
+
+        for (Mesh mesh : model.getMeshes()) {
+            writeBoolean(mesh.hasSkinning());
+            if (mesh.hasSkinning()) {
+                writeSkin(mesh.getSkin());
+            }
+        }
+    }
+
+    private void writeSkin(Skin skin) {
+        int[] offsets = skin.getOffsets();
+        int[] joints = skin.getJoints();
+        float[] weights = skin.getWeights();
+        int verticesCount = skin.getVerticesCount();
+        writeInt(joints.length);
+        ByteBuffer counts = reserve(verticesCount * 2);
+        for (int v = 0; v < verticesCount; v++) {
+            counts.putShort((short) (offsets[v + 1] - offsets[v]));
+        }
+        ByteBuffer jointsBuffer = reserve(joints.length * 2);
+        for (int joint : joints) {
+            jointsBuffer.putShort((short) joint);
+        }
+        ByteBuffer weightsBuffer = reserve(weights.length * 4);
+        for (float weight : weights) {
+            weightsBuffer.putFloat(weight);
+        }
+    }
+
+    private void writeMatrix(float[] matrix) {
+        ByteBuffer values = reserve(64);
+        for (int i = 0; i < 16; i++) {
+            values.putFloat(matrix[i]);
+        }
+    }
+
+    public void writeMesh(Mesh mesh) {
+        checkIndices(mesh);
+
+        boolean hasTangents = mesh.hasTangents();
+        boolean hasBinormal = mesh.hasBinormal();
+        boolean hasVertexColor = mesh.hasVertexColor();
+        writeBoolean(hasTangents);
+        writeBoolean(hasBinormal);
+        writeBoolean(hasVertexColor);
+        writeString(mesh.getName());
+
+        int verticesCount = mesh.getVerticesCount();
+        writeInt(verticesCount);
+
+        float[] positions = mesh.getPositions();
+        float[] normals = mesh.getNormals();
+        float[] uvs = mesh.getUvs();
+        float[] colors = mesh.getColors();
+        float[] tangents = mesh.getTangents();
+        float[] binormals = mesh.getBinormals();
+        if (compact) {
+            writeCompactVertices(mesh);
+        } else {
+            ByteBuffer vertices = reserve(verticesCount * vertexSize(hasVertexColor, hasTangents, hasBinormal) * 4);
+            for (int i = 0; i < verticesCount; i++) {
+                int i3 = i * 3;
+                vertices.putFloat(positions[i3]).putFloat(positions[i3 + 1]).putFloat(positions[i3 + 2]);
+                vertices.putFloat(normals[i3]).putFloat(normals[i3 + 1]).putFloat(normals[i3 + 2]);
+                vertices.putFloat(uvs[i * 2]).putFloat(1 - uvs[i * 2 + 1]);
+                if (hasVertexColor) {
+                    vertices.putFloat(colors[i3]).putFloat(colors[i3 + 1]).putFloat(colors[i3 + 2]);
+                }
+                if (hasTangents) {
+                    vertices.putFloat(tangents[i3]).putFloat(tangents[i3 + 1]).putFloat(tangents[i3 + 2]);
+                }
+                if (hasBinormal) {
+                    vertices.putFloat(binormals[i3]).putFloat(binormals[i3 + 1]).putFloat(binormals[i3 + 2]);
+                }
+            }
+        }
+
+        int[] indices = mesh.getIndices();
+        writeInt(indices.length);
+        ByteBuffer indicesBuffer = reserve(indices.length * 2);
+        for (int index : indices) {
+            indicesBuffer.putShort((short) index);
+        }
+    }
+
+    /**
+     * Writes the bounds of positions and UVs followed by the quantized vertex block.
+     */
+    private void writeCompactVertices(Mesh mesh) {
+        int verticesCount = mesh.getVerticesCount();
+        float[] positions = mesh.getPositions();
+        float[] normals = mesh.getNormals();
+        float[] uvs = CompactEncoding.flipV(mesh.getUvs());
+        float[] colors = mesh.getColors();
+        float[] tangents = mesh.getTangents();
+        float[] binormals = mesh.getBinormals();
+        float[] positionBounds = CompactEncoding.bounds(positions, 3);
+        float[] uvBounds = CompactEncoding.bounds(uvs, 2);
+        for (float bound : positionBounds) {
+            writeFloat(bound);
+        }
+        for (float bound : uvBounds) {
+            writeFloat(bound);
+        }
+
+        ByteBuffer vertices = reserve(verticesCount * CompactEncoding.vertexSize(mesh.hasVertexColor(), mesh.hasTangents(), mesh.hasBinormal()) * 2);
+        for (int i = 0; i < verticesCount; i++) {
+            int i3 = i * 3;
+            for (int axis = 0; axis < 3; axis++) {
+                vertices.putShort(CompactEncoding.encodeUnorm(positions[i3 + axis], positionBounds[axis], positionBounds[3 + axis]));
+            }
+            putDirection(vertices, normals, i3);
+            for (int axis = 0; axis < 2; axis++) {
+                vertices.putShort(CompactEncoding.encodeUnorm(uvs[i * 2 + axis], uvBounds[axis], uvBounds[2 + axis]));
+            }
+            if (colors != null) {
+                for (int component = 0; component < 3; component++) {
+                    vertices.putShort(CompactEncoding.encodeUnorm(colors[i3 + component], 0, 1));
+                }
+            }
+            if (tangents != null) {
+                putDirection(vertices, tangents, i3);
+            }
+            if (binormals != null) {
+                putDirection(vertices, binormals, i3);
+            }
+        }
+    }
+
+    private static void putDirection(ByteBuffer vertices, float[] vectors, int offset) {
+        int encoded = CompactEncoding.encodeDirection(vectors[offset], vectors[offset + 1], vectors[offset + 2]);
+        vertices.putShort((short) encoded).putShort((short) (encoded >>> 16));
+    }
+
+    public void writeMaterial(Material material) {
+        writeString(material.getTextureName());
+        writeString(material.getMaterialName());
+
+        boolean isEnabled = true;
+        writeBoolean(isEnabled);
+
+        boolean propertyExists = true;
+        writeBoolean(propertyExists);
+        writeColor(material.getEmissive());
+
+        writeBoolean(propertyExists);
+        writeFloat(material.getShininess());
+
+        writeBoolean(propertyExists);
+        writeColor(material.getSpecular());
+
+        writeBoolean(propertyExists);
+        writeColor(material.getTransparency());
+    }
+
+    /**
+     * Number of floats per vertex in the WOM vertex block.
+     */
+    public static int vertexSize(boolean hasVertexColor, boolean hasTangents, boolean hasBinormal) {
+        return 8 + (hasVertexColor ? 3 : 0) + (hasTangents ? 3 : 0) + (hasBinormal ? 3 : 0);
+    }
+
+    private static void checkIndices(Mesh mesh) {
+        for (int index : mesh.getIndices()) {
+            if (index > Short.MAX_VALUE)
+                throw new IllegalArgumentException(String.format("mesh %s has too many vertices and can't be represented correctly in WOM", mesh.getName()));
+        }
+    }
+
+    private void writeColor(float[] color) {
+        reserve(16).putFloat(color[0]).putFloat(color[1]).putFloat(color[2]).putFloat(color[3]);
+    }
+
+    public void writeBoolean(boolean value) {
+        reserve(1).put(value ? (byte) 1 : (byte) 0);
+    }
+
+    public void writeInt(int value) {
+        reserve(4).putInt(value);
+    }
+
+    public void writeShort(short value) {
+        reserve(2).putShort(value);
+    }
+
+    public void writeFloat(float value) {
+        reserve(4).putFloat(value);
+    }
+
+    public void writeString(String str) {
+        byte[] chars = str.getBytes(StandardCharsets.UTF_8);
+        reserve(4 + chars.length).putInt(chars.length).put(chars);
+    }
+
+    /**
+     * Makes sure the given number of bytes can be put into the returned buffer.
+     * The buffer is only valid until the next call on this writer.
+     */
+    public ByteBuffer reserve(int bytes) {
+        if (buffer.remaining() < bytes) {
+            int capacity = Math.max(buffer.capacity() * 2, buffer.position() + bytes);
+            ByteBuffer grown = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.flip();
+            grown.put(buffer);
+            buffer = grown;
+        }
+        return buffer;
+    }
+
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.wurmonline.womconverter.model;
+
+/**
+ * Joint of the skeleton of a model. Joints are listed parents first, so the parent index is always
+ * lower than the index of the joint. Matrices hold 16 floats, row by row.
+ */
+public class Joint {
+
+    private final String name;
+    private final int parent;
+    private final float[] transform;
+    private final float[] inverseBindMatrix;
+
+    /**
+     * @param parent index of the parent joint, -1 for a root joint
+     * @param transform transformation relative to the parent joint
+     * @param inverseBindMatrix transformation from mesh space to the space of the joint in the bind pose
+     */
+    public Joint(String name, int parent, float[] transform, float[] inverseBindMatrix) {
+        this.name = name;
+        this.parent = parent;
+        this.transform = transform;
+        this.inverseBindMatrix = inverseBindMatrix;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getParent() {
+        return parent;
+    }
+
+    public float[] getTransform() {
+        return transform;
+    }
+
+    public float[] getInverseBindMatrix() {
+        return inverseBindMatrix;
+    }
+
+    public static float[] identity() {
+        float[] matrix = new float[16];
+        matrix[0] = matrix[5] = matrix[10] = matrix[15] = 1;
+        return matrix;
+    }
+}
@@ -0,0 +1,55 @@
+package com.wurmonline.womconverter.model;
+
+/**
+ * Material record of a WOM mesh. Colors hold red, green, blue and alpha.
+ */
+public class Material {
+
+    private String textureName;
+    private String materialName;
+    private final float[] emissive = new float[4];
+    private float shininess = 0.0f;
+    private final float[] specular = new float[4];
+    private final float[] transparency = new float[4];
+
+    public Material(String textureName, String materialName) {
+        this.textureName = textureName;
+        this.materialName = materialName;
+    }
+
+    public String getTextureName() {
+        return textureName;
+    }
+
+    public void setTextureName(String textureName) {
+        this.textureName = textureName;
+    }
+
+    public String getMaterialName() {
+        return materialName;
+    }
+
+    public void setMaterialName(String materialName) {
+        this.materialName = materialName;
+    }
+
+    public float[] getEmissive() {
+        return emissive;
+    }
+
+    public float getShininess() {
+        return shininess;
+    }
+
+    public void setShininess(float shininess) {
+        this.shininess = shininess;
+    }
+
+    public float[] getSpecular() {
+        return specular;
+    }
+
+    public float[] getTransparency() {
+        return transparency;
+    }
+}
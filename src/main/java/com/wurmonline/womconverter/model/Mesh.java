@@ -0,0 +1,116 @@
+package com.wurmonline.womconverter.model;
+
+/**
+ * Triangle mesh stored as one primitive array per vertex attribute.
+ * Positions, normals, colors, tangents and binormals hold three floats per vertex,
+ * UVs hold two. Optional attributes are {@code null} when the mesh does not have them.
+ * Indices hold three entries per triangle. Skinned meshes also have the joint weights of their vertices.
+ */
+public class Mesh {
+
+    private String name;
+    private final int verticesCount;
+    private final float[] positions;
+    private final float[] normals;
+    private final float[] uvs;
+    private final float[] colors;
+    private final float[] tangents;
+    private final float[] binormals;
+    private int[] indices = new int[0];
+    private Material[] materials = new Material[0];
+    private Skin skin = null;
+
+    public Mesh(String name, int verticesCount, boolean hasVertexColor, boolean hasTangents, boolean hasBinormal) {
+        this.name = name;
+        this.verticesCount = verticesCount;
+        this.positions = new float[verticesCount * 3];
+        this.normals = new float[verticesCount * 3];
+        this.uvs = new float[verticesCount * 2];
+        this.colors = hasVertexColor ? new float[verticesCount * 3] : null;
+        this.tangents = hasTangents ? new float[verticesCount * 3] : null;
+        this.binormals = hasBinormal ? new float[verticesCount * 3] : null;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public int getVerticesCount() {
+        return verticesCount;
+    }
+
+    public int getTrianglesCount() {
+        return indices.length / 3;
+    }
+
+    public boolean hasVertexColor() {
+        return colors != null;
+    }
+
+    public boolean hasTangents() {
+        return tangents != null;
+    }
+
+    public boolean hasBinormal() {
+        return binormals != null;
+    }
+
+    public float[] getPositions() {
+        return positions;
+    }
+
+    public float[] getNormals() {
+        return normals;
+    }
+
+    public float[] getUvs() {
+        return uvs;
+    }
+
+    public float[] getColors() {
+        return colors;
+    }
+
+    public float[] getTangents() {
+        return tangents;
+    }
+
+    public float[] getBinormals() {
+        return binormals;
+    }
+
+    public int[] getIndices() {
+        return indices;
+    }
+
+    public void setIndices(int[] indices) {
+        this.indices = indices;
+    }
+
+    public Material[] getMaterials() {
+        return materials;
+    }
+
+    public void setMaterials(Material... materials) {
+        this.materials = materials;
+    }
+
+    public boolean hasSkinning() {
+        return skin != null;
+    }
+
+    /**
+     * Joint weights of the vertices, {@code null} when the mesh is not skinned.
+     */
+    public Skin getSkin() {
+        return skin;
+    }
+
+    public void setSkin(Skin skin) {
+        this.skin = skin;
+    }
+}
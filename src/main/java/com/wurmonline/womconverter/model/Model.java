@@ -0,0 +1,30 @@
+package com.wurmonline.womconverter.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Contents of a WOM file: its meshes in file order, each with its own materials, and the joints
+ * of its skeleton, parents first.
+ */
+public class Model {
+
+    private final List<Mesh> meshes = new ArrayList<>();
+    private final List<Joint> joints = new ArrayList<>();
+
+    public List<Mesh> getMeshes() {
+        return meshes;
+    }
+
+    public void addMesh(Mesh mesh) {
+        meshes.add(mesh);
+    }
+
+    public List<Joint> getJoints() {
+        return joints;
+    }
+
+    public void addJoint(Joint joint) {
+        joints.add(joint);
+    }
+}
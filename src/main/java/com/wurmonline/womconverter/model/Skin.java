@@ -0,0 +1,100 @@
+package com.wurmonline.womconverter.model;
+
+import java.io.IOException;
+
+/**
+ * Joint weights of the vertices of a mesh, stored as a compressed table: the influences of vertex
+ * {@code v} are the entries {@code offsets[v]} to {@code offsets[v + 1] - 1} of the joints and weights arrays.
+ * Joints are indices into the joints of the model.
+ */
+public class Skin {
+
+    private final int[] offsets;
+    private final int[] joints;
+    private final float[] weights;
+
+    public Skin(int[] offsets, int[] joints, float[] weights) {
+        this.offsets = offsets;
+        this.joints = joints;
+        this.weights = weights;
+    }
+
+    /**
+     * Builds the per-vertex table from per-joint lists of vertices and weights, as Assimp stores bones.
+     * The lists are counted once to place each vertex's influences, and then copied once into place,
+     * so the time is linear in the number of vertices and weights. Influences of a vertex keep the joint order.
+     *
+     * @param meshName name of the mesh, for error messages
+     * @param boneNames name of each list, for error messages
+     * @param boneJoints joint index of each list
+     * @param boneVertices vertex indices of each list
+     * @param boneWeights weights of each list, in the order of its vertices
+     * @throws IOException if a list references a vertex outside of the mesh
+     */
+    public static Skin fromBones(String meshName, int verticesCount, String[] boneNames, int[] boneJoints, int[][] boneVertices, float[][] boneWeights) throws IOException {
+        int[] offsets = new int[verticesCount + 1];
+        for (int bone = 0; bone < boneVertices.length; bone++) {
+            for (int vertex : boneVertices[bone]) {
+                if (vertex < 0 || vertex >= verticesCount) {
+                    throw new IOException("Mesh " + meshName + ": bone " + boneNames[bone] + " has a weight for vertex " + Integer.toUnsignedLong(vertex)
+                            + " of " + verticesCount + " vertices");
+                }
+                offsets[vertex + 1]++;
+            }
+        }
+        for (int v = 0; v < verticesCount; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+
+        int[] next = new int[verticesCount];
+        System.arraycopy(offsets, 0, next, 0, verticesCount);
+        int[] joints = new int[offsets[verticesCount]];
+        float[] weights = new float[offsets[verticesCount]];
+        for (int bone = 0; bone < boneJoints.length; bone++) {
+            int[] vertices = boneVertices[bone];
+            float[] values = boneWeights[bone];
+            for (int i = 0; i < vertices.length; i++) {
+                int entry = next[vertices[i]]++;
+                joints[entry] = boneJoints[bone];
+                weights[entry] = values[i];
+            }
+        }
+        return new Skin(offsets, joints, weights);
+    }
+
+    public int getVerticesCount() {
+        return offsets.length - 1;
+    }
+
+    public int[] getOffsets() {
+        return offsets;
+    }
+
+    public int[] getJoints() {
+        return joints;
+    }
+
+    public float[] getWeights() {
+        return weights;
+    }
+
+    /**
+     * Creates the skin of a mesh made of the given vertices of this one, in the given order.
+     */
+    public Skin gather(int[] vertices, int verticesCount) {
+        int[] gatheredOffsets = new int[verticesCount + 1];
+        for (int i = 0; i < verticesCount; i++) {
+            int v = vertices[i];
+            gatheredOffsets[i + 1] = gatheredOffsets[i] + offsets[v + 1] - offsets[v];
+        }
+        int[] gatheredJoints = new int[gatheredOffsets[verticesCount]];
+        float[] gatheredWeights = new float[gatheredOffsets[verticesCount]];
+        for (int i = 0; i < verticesCount; i++) {
+            int v = vertices[i];
+            int count = offsets[v + 1] - offsets[v];
+            System.arraycopy(joints, offsets[v], gatheredJoints, gatheredOffsets[i], count);
+            System.arraycopy(weights, offsets[v], gatheredWeights, gatheredOffsets[i], count);
+        }
+        return new Skin(gatheredOffsets, gatheredJoints, gatheredWeights);
+    }
+}
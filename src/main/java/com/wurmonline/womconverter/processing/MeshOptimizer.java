@@ -0,0 +1,333 @@
+package com.wurmonline.womconverter.processing;
+
+import com.wurmonline.womconverter.model.Mesh;
+
+import java.util.Arrays;
+
+/**
+ * Reorders mesh data for the GPU: triangles for post-transform vertex cache reuse, using
+ * Tom Forsyth's linear-speed vertex cache optimisation, then clusters of triangles so that
+ * likely occluders are drawn first, reducing overdraw, and vertices in the order triangles
+ * first use them, for vertex fetch locality. The rendered result does not change.
+ */
+public final class MeshOptimizer {
+
+    /**
+     * Size of the simulated LRU cache used for scoring.
+     */
+    private static final int CACHE_SIZE = 32;
+    private static final float CACHE_DECAY_POWER = 1.5f;
+    private static final float LAST_TRIANGLE_SCORE = 0.75f;
+    private static final float VALENCE_BOOST_SCALE = 2.0f;
+    private static final float VALENCE_BOOST_POWER = 0.5f;
+
+    /**
+     * FIFO cache size used for ACMR figures, typical of post-transform caches of current GPUs.
+     */
+    public static final int ACMR_CACHE_SIZE = 16;
+
+    private static final float[] CACHE_POSITION_SCORES = new float[CACHE_SIZE];
+    private static final float[] VALENCE_SCORES = new float[64];
+
+    static {
+        for (int i = 0; i < CACHE_SIZE; i++) {
+            if (i < 3) {
+                CACHE_POSITION_SCORES[i] = LAST_TRIANGLE_SCORE;
+            } else {
+                float scaler = 1.0f / (CACHE_SIZE - 3);
+                CACHE_POSITION_SCORES[i] = (float) Math.pow(1.0f - (i - 3) * scaler, CACHE_DECAY_POWER);
+            }
+        }
+        for (int i = 1; i < VALENCE_SCORES.length; i++) {
+            VALENCE_SCORES[i] = VALENCE_BOOST_SCALE * (float) Math.pow(i, -VALENCE_BOOST_POWER);
+        }
+    }
+
+    private MeshOptimizer() {
+    }
+
+    /**
+     * Optimizes the mesh in place: triangle order first, then cluster order, then vertex order.
+     */
+    public static void optimize(Mesh mesh) {
+        int[] indices = optimizeVertexCache(mesh.getIndices(), mesh.getVerticesCount());
+        mesh.setIndices(optimizeOverdraw(indices, mesh.getPositions(), mesh.getVerticesCount()));
+        optimizeVertexFetch(mesh);
+    }
+
+    /**
+     * Average number of vertex shader invocations per triangle with a FIFO cache of the given size.
+     * 3.0 means no reuse at all, about 0.5 is the optimum for regular grids.
+     */
+    public static float acmr(int[] indices, int verticesCount, int cacheSize) {
+        int trianglesCount = indices.length / 3;
+        if (trianglesCount == 0) return 0;
+        int[] cachedAt = new int[verticesCount];
+        Arrays.fill(cachedAt, -cacheSize - 1);
+        int misses = 0;
+        for (int index : indices) {
+            // the vertex is still in the FIFO if at most cacheSize misses happened since it entered
+            if (misses - cachedAt[index] > cacheSize) {
+                cachedAt[index] = misses;
+                misses++;
+            }
+        }
+        return misses / (float) trianglesCount;
+    }
+
+    /**
+     * Returns the triangles reordered so vertices are reused while still in the cache.
+     */
+    public static int[] optimizeVertexCache(int[] indices, int verticesCount) {
+        int trianglesCount = indices.length / 3;
+        if (trianglesCount == 0) return indices;
+
+        // triangles using each vertex, in compressed rows; the live part shrinks as triangles are emitted
+        int[] remaining = new int[verticesCount];
+        for (int index : indices) {
+            remaining[index]++;
+        }
+        int[] offsets = new int[verticesCount + 1];
+        for (int i = 0; i < verticesCount; i++) {
+            offsets[i + 1] = offsets[i] + remaining[i];
+        }
+        int[] adjacency = new int[indices.length];
+        int[] fill = Arrays.copyOf(offsets, verticesCount);
+        for (int i = 0; i < indices.length; i++) {
+            adjacency[fill[indices[i]]++] = i / 3;
+        }
+
+        int[] cachePosition = new int[verticesCount];
+        Arrays.fill(cachePosition, -1);
+        float[] vertexScores = new float[verticesCount];
+        for (int i = 0; i < verticesCount; i++) {
+            vertexScores[i] = vertexScore(-1, remaining[i]);
+        }
+        boolean[] emitted = new boolean[trianglesCount];
+        int bestTriangle = -1;
+        float bestScore = -1;
+        for (int t = 0; t < trianglesCount; t++) {
+            float score = vertexScores[indices[t * 3]] + vertexScores[indices[t * 3 + 1]] + vertexScores[indices[t * 3 + 2]];
+            if (score > bestScore) {
+                bestScore = score;
+                bestTriangle = t;
+            }
+        }
+
+        int[] cache = new int[CACHE_SIZE + 3];
+        int[] newCache = new int[CACHE_SIZE + 3];
+        int cacheCount = 0;
+        int[] result = new int[trianglesCount * 3];
+        int scanCursor = 0;
+
+        for (int emittedCount = 0; emittedCount < trianglesCount; emittedCount++) {
+            if (bestTriangle < 0) {
+                // nothing in the cache is connected to unemitted triangles, continue with the next one in source order
+                while (emitted[scanCursor]) scanCursor++;
+                bestTriangle = scanCursor;
+            }
+            int t = bestTriangle;
+            emitted[t] = true;
+            System.arraycopy(indices, t * 3, result, emittedCount * 3, 3);
+
+            // detach the triangle from its vertices and put them at the front of the cache
+            int newCount = 0;
+            for (int k = 0; k < 3; k++) {
+                int v = indices[t * 3 + k];
+                int end = offsets[v] + remaining[v];
+                for (int a = offsets[v]; a < end; a++) {
+                    if (adjacency[a] == t) {
+                        adjacency[a] = adjacency[end - 1];
+                        break;
+                    }
+                }
+                remaining[v]--;
+                if (newCount == 0 || (newCache[0] != v && (newCount == 1 || newCache[1] != v))) {
+                    newCache[newCount++] = v;
+                }
+            }
+            int triangleVertices = newCount;
+            for (int c = 0; c < cacheCount; c++) {
+                int v = cache[c];
+                if (!contains(newCache, triangleVertices, v)) {
+                    newCache[newCount++] = v;
+                }
+            }
+            int[] swap = cache;
+            cache = newCache;
+            newCache = swap;
+            cacheCount = newCount;
+
+            // vertices pushed out of the cache lose their position score
+            for (int c = CACHE_SIZE; c < cacheCount; c++) {
+                int v = cache[c];
+                cachePosition[v] = -1;
+                vertexScores[v] = vertexScore(-1, remaining[v]);
+            }
+            cacheCount = Math.min(cacheCount, CACHE_SIZE);
+            for (int c = 0; c < cacheCount; c++) {
+                int v = cache[c];
+                cachePosition[v] = c;
+                vertexScores[v] = vertexScore(c, remaining[v]);
+            }
+
+            bestTriangle = -1;
+            bestScore = -1;
+            for (int c = 0; c < cacheCount; c++) {
+                int v = cache[c];
+                int end = offsets[v] + remaining[v];
+                for (int a = offsets[v]; a < end; a++) {
+                    int other = adjacency[a];
+                    float score = vertexScores[indices[other * 3]] + vertexScores[indices[other * 3 + 1]] + vertexScores[indices[other * 3 + 2]];
+                    if (score > bestScore) {
+                        bestScore = score;
+                        bestTriangle = other;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the triangles of a cache-optimized order with its clusters sorted for less overdraw, in the
+     * view-independent way of meshoptimizer. A cluster starts at each triangle whose three vertices all miss the
+     * FIFO cache, which is where the cache order starts a new patch, so the cache efficiency is kept. Clusters
+     * facing away from the center of the mesh, measured by the distance of their centroid from the mesh centroid
+     * along their average normal, are on the outside of the model and drawn first, as they tend to hide the others.
+     */
+    public static int[] optimizeOverdraw(int[] indices, float[] positions, int verticesCount) {
+        int trianglesCount = indices.length / 3;
+        if (trianglesCount < 2) return indices.clone();
+
+        int[] clusterStarts = new int[trianglesCount + 1];
+        int clustersCount = 0;
+        int[] cachedAt = new int[verticesCount];
+        Arrays.fill(cachedAt, -ACMR_CACHE_SIZE - 1);
+        int misses = 0;
+        for (int t = 0; t < trianglesCount; t++) {
+            int triangleMisses = 0;
+            for (int k = 0; k < 3; k++) {
+                int index = indices[t * 3 + k];
+                if (misses - cachedAt[index] > ACMR_CACHE_SIZE) {
+                    cachedAt[index] = misses;
+                    misses++;
+                    triangleMisses++;
+                }
+            }
+            if (t == 0 || triangleMisses == 3) {
+                clusterStarts[clustersCount++] = t;
+            }
+        }
+        clusterStarts[clustersCount] = trianglesCount;
+        if (clustersCount < 2) return indices.clone();
+
+        double meshX = 0, meshY = 0, meshZ = 0;
+        for (int index : indices) {
+            meshX += positions[index * 3];
+            meshY += positions[index * 3 + 1];
+            meshZ += positions[index * 3 + 2];
+        }
+        meshX /= indices.length;
+        meshY /= indices.length;
+        meshZ /= indices.length;
+
+        float[] keys = new float[clustersCount];
+        for (int c = 0; c < clustersCount; c++) {
+            double centerX = 0, centerY = 0, centerZ = 0;
+            double normalX = 0, normalY = 0, normalZ = 0;
+            double area = 0;
+            for (int t = clusterStarts[c]; t < clusterStarts[c + 1]; t++) {
+                int a = indices[t * 3] * 3, b = indices[t * 3 + 1] * 3, d = indices[t * 3 + 2] * 3;
+                double abX = positions[b] - positions[a], abY = positions[b + 1] - positions[a + 1], abZ = positions[b + 2] - positions[a + 2];
+                double adX = positions[d] - positions[a], adY = positions[d + 1] - positions[a + 1], adZ = positions[d + 2] - positions[a + 2];
+                // the cross product is twice the area along the normal, so larger triangles weigh more
+                double crossX = abY * adZ - abZ * adY, crossY = abZ * adX - abX * adZ, crossZ = abX * adY - abY * adX;
+                double triangleArea = Math.sqrt(crossX * crossX + crossY * crossY + crossZ * crossZ);
+                centerX += (positions[a] + positions[b] + positions[d]) / 3 * triangleArea;
+                centerY += (positions[a + 1] + positions[b + 1] + positions[d + 1]) / 3 * triangleArea;
+                centerZ += (positions[a + 2] + positions[b + 2] + positions[d + 2]) / 3 * triangleArea;
+                normalX += crossX;
+                normalY += crossY;
+                normalZ += crossZ;
+                area += triangleArea;
+            }
+            double normalLength = Math.sqrt(normalX * normalX + normalY * normalY + normalZ * normalZ);
+            if (area == 0 || normalLength == 0) continue;
+            keys[c] = (float) (((centerX / area - meshX) * normalX + (centerY / area - meshY) * normalY + (centerZ / area - meshZ) * normalZ) / normalLength);
+        }
+
+        Integer[] order = new Integer[clustersCount];
+        for (int c = 0; c < clustersCount; c++) {
+            order[c] = c;
+        }
+        // stable, so clusters with equal keys keep the cache order
+        Arrays.sort(order, (c1, c2) -> Float.compare(keys[c2], keys[c1]));
+
+        int[] result = new int[indices.length];
+        int next = 0;
+        for (int c : order) {
+            int from = clusterStarts[c] * 3;
+            int length = clusterStarts[c + 1] * 3 - from;
+            System.arraycopy(indices, from, result, next, length);
+            next += length;
+        }
+        System.arraycopy(indices, trianglesCount * 3, result, next, indices.length - trianglesCount * 3);
+        return result;
+    }
+
+    /**
+     * Renumbers vertices in the order the triangles first reference them. Vertices not used by
+     * any triangle keep their relative order after the used ones, so the vertex count does not change.
+     */
+    public static void optimizeVertexFetch(Mesh mesh) {
+        int verticesCount = mesh.getVerticesCount();
+        int[] indices = mesh.getIndices();
+        int[] remap = new int[verticesCount];
+        Arrays.fill(remap, -1);
+        int next = 0;
+        for (int i = 0; i < indices.length; i++) {
+            int v = indices[i];
+            if (remap[v] < 0) remap[v] = next++;
+            indices[i] = remap[v];
+        }
+        for (int v = 0; v < verticesCount; v++) {
+            if (remap[v] < 0) remap[v] = next++;
+        }
+
+        permute(mesh.getPositions(), remap, 3);
+        permute(mesh.getNormals(), remap, 3);
+        permute(mesh.getUvs(), remap, 2);
+        permute(mesh.getColors(), remap, 3);
+        permute(mesh.getTangents(), remap, 3);
+        permute(mesh.getBinormals(), remap, 3);
+        if (mesh.hasSkinning()) {
+            int[] order = new int[verticesCount];
+            for (int v = 0; v < verticesCount; v++) {
+                order[remap[v]] = v;
+            }
+            mesh.setSkin(mesh.getSkin().gather(order, verticesCount));
+        }
+    }
+
+    private static void permute(float[] attribute, int[] remap, int components) {
+        if (attribute == null) return;
+        float[] source = attribute.clone();
+        for (int v = 0; v < remap.length; v++) {
+            System.arraycopy(source, v * components, attribute, remap[v] * components, components);
+        }
+    }
+
+    private static boolean contains(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) return true;
+        }
+        return false;
+    }
+
+    private static float vertexScore(int cachePosition, int remainingTriangles) {
+        if (remainingTriangles == 0) return -1;
+        float score = cachePosition < 0 ? 0 : CACHE_POSITION_SCORES[cachePosition];
+        return score + VALENCE_SCORES[Math.min(remainingTriangles, VALENCE_SCORES.length - 1)];
+    }
+}
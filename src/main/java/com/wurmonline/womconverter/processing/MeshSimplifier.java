@@ -0,0 +1,234 @@
+package com.wurmonline.womconverter.processing;
+
+import com.wurmonline.womconverter.model.Mesh;
+
+import java.util.Arrays;
+
+/**
+ * Reduces the triangle count of a mesh with quadric error metric edge collapses (Garland and
+ * Heckbert). Edges collapse onto one of their existing vertices, so normals, UVs, colors and
+ * tangents are kept as they are and never interpolated. Vertices on open edges are locked:
+ * WOM vertices are split along UV seams and hard edges, and every mesh holds a single material,
+ * so this keeps seams, material boundaries and borders between split parts intact.
+ */
+public final class MeshSimplifier {
+
+    private MeshSimplifier() {
+    }
+
+    /**
+     * Returns a simplified copy of the mesh with at most about {@code ratio} of its triangles,
+     * or fewer reductions when the remaining collapses would flip triangles or move locked vertices.
+     */
+    public static Mesh simplify(Mesh mesh, String name, float ratio) {
+        int verticesCount = mesh.getVerticesCount();
+        float[] positions = mesh.getPositions();
+        int[] indices = mesh.getIndices().clone();
+        int targetIndicesCount = (int) Math.ceil(mesh.getTrianglesCount() * (double) ratio) * 3;
+
+        double[] quadrics = new double[verticesCount * 10];
+        for (int i = 0; i < indices.length; i += 3) {
+            addPlaneQuadric(quadrics, positions, indices[i], indices[i + 1], indices[i + 2]);
+        }
+
+        int[] offsets = new int[verticesCount + 1];
+        int[] adjacency = new int[indices.length];
+        buildAdjacency(indices, indices.length, verticesCount, offsets, adjacency);
+        boolean[] locked = findBorderVertices(indices, verticesCount, offsets, adjacency);
+
+        int[] remap = new int[verticesCount];
+        boolean[] touched = new boolean[verticesCount];
+        int indicesCount = indices.length;
+        while (indicesCount > targetIndicesCount) {
+            buildAdjacency(indices, indicesCount, verticesCount, offsets, adjacency);
+
+            // every edge of every triangle in both directions, sorted by the error of collapsing it
+            int[] from = new int[indicesCount * 2];
+            int[] to = new int[indicesCount * 2];
+            long[] order = new long[indicesCount * 2];
+            int candidatesCount = 0;
+            for (int i = 0; i < indicesCount; i++) {
+                int a = indices[i];
+                int b = indices[i - i % 3 + (i + 1) % 3];
+                for (int direction = 0; direction < 2; direction++) {
+                    int u = direction == 0 ? a : b;
+                    int v = direction == 0 ? b : a;
+                    if (locked[u] || u == v) continue;
+                    float cost = (float) Math.max(0, collapseError(quadrics, u, v, positions));
+                    from[candidatesCount] = u;
+                    to[candidatesCount] = v;
+                    order[candidatesCount] = (long) Float.floatToIntBits(cost) << 32 | candidatesCount;
+                    candidatesCount++;
+                }
+            }
+            Arrays.sort(order, 0, candidatesCount);
+
+            for (int v = 0; v < verticesCount; v++) {
+                remap[v] = v;
+            }
+            Arrays.fill(touched, false);
+            int removedIndices = 0;
+            int collapses = 0;
+            for (int c = 0; c < candidatesCount && indicesCount - removedIndices > targetIndicesCount; c++) {
+                int candidate = (int) order[c];
+                int u = from[candidate];
+                int v = to[candidate];
+                if (touched[u] || touched[v] || flips(indices, offsets, adjacency, positions, u, v)) continue;
+
+                remap[u] = v;
+                for (int k = 0; k < 10; k++) {
+                    quadrics[v * 10 + k] += quadrics[u * 10 + k];
+                }
+                // neighbours of u must not move again in this pass, their triangles were checked against current positions
+                for (int a = offsets[u]; a < offsets[u + 1]; a++) {
+                    int t = adjacency[a];
+                    boolean shared = false;
+                    for (int k = 0; k < 3; k++) {
+                        touched[indices[t * 3 + k]] = true;
+                        shared |= indices[t * 3 + k] == v;
+                    }
+                    if (shared) removedIndices += 3;
+                }
+                collapses++;
+            }
+            if (collapses == 0) break;
+
+            int kept = 0;
+            for (int i = 0; i < indicesCount; i += 3) {
+                int a = remap[indices[i]], b = remap[indices[i + 1]], c = remap[indices[i + 2]];
+                if (a == b || b == c || a == c) continue;
+                indices[kept++] = a;
+                indices[kept++] = b;
+                indices[kept++] = c;
+            }
+            indicesCount = kept;
+        }
+
+        // keep only vertices still in use, in order of first use
+        int[] vertices = new int[verticesCount];
+        int[] newIndex = new int[verticesCount];
+        Arrays.fill(newIndex, -1);
+        int usedCount = 0;
+        for (int i = 0; i < indicesCount; i++) {
+            int v = indices[i];
+            if (newIndex[v] < 0) {
+                newIndex[v] = usedCount;
+                vertices[usedCount++] = v;
+            }
+            indices[i] = newIndex[v];
+        }
+        return MeshSplitter.extract(mesh, name, vertices, usedCount, indices, indicesCount);
+    }
+
+    private static void buildAdjacency(int[] indices, int indicesCount, int verticesCount, int[] offsets, int[] adjacency) {
+        Arrays.fill(offsets, 0);
+        for (int i = 0; i < indicesCount; i++) {
+            offsets[indices[i] + 1]++;
+        }
+        for (int v = 0; v < verticesCount; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+        int[] fill = Arrays.copyOf(offsets, verticesCount);
+        for (int i = 0; i < indicesCount; i++) {
+            adjacency[fill[indices[i]]++] = i / 3;
+        }
+    }
+
+    /**
+     * Vertices of edges used by a single triangle, found by looking for the opposite half-edge.
+     */
+    private static boolean[] findBorderVertices(int[] indices, int verticesCount, int[] offsets, int[] adjacency) {
+        boolean[] border = new boolean[verticesCount];
+        for (int i = 0; i < indices.length; i++) {
+            int a = indices[i];
+            int b = indices[i - i % 3 + (i + 1) % 3];
+            boolean opposite = false;
+            for (int k = offsets[b]; k < offsets[b + 1] && !opposite; k++) {
+                int t = adjacency[k];
+                for (int e = 0; e < 3; e++) {
+                    if (indices[t * 3 + e] == b && indices[t * 3 + (e + 1) % 3] == a) {
+                        opposite = true;
+                        break;
+                    }
+                }
+            }
+            if (!opposite) {
+                border[a] = true;
+                border[b] = true;
+            }
+        }
+        return border;
+    }
+
+    /**
+     * Whether moving u onto v turns any remaining triangle of u over or makes it degenerate.
+     */
+    private static boolean flips(int[] indices, int[] offsets, int[] adjacency, float[] positions, int u, int v) {
+        for (int a = offsets[u]; a < offsets[u + 1]; a++) {
+            int t = adjacency[a];
+            int i0 = indices[t * 3], i1 = indices[t * 3 + 1], i2 = indices[t * 3 + 2];
+            if (i0 == v || i1 == v || i2 == v) continue;
+            // rotate the triangle so u comes first, the other two corners stay in place
+            int b = i0 == u ? i1 : i1 == u ? i2 : i0;
+            int c = i0 == u ? i2 : i1 == u ? i0 : i1;
+            double e1x = positions[b * 3] - positions[c * 3], e1y = positions[b * 3 + 1] - positions[c * 3 + 1], e1z = positions[b * 3 + 2] - positions[c * 3 + 2];
+            double beforeX = positions[u * 3] - positions[c * 3], beforeY = positions[u * 3 + 1] - positions[c * 3 + 1], beforeZ = positions[u * 3 + 2] - positions[c * 3 + 2];
+            double afterX = positions[v * 3] - positions[c * 3], afterY = positions[v * 3 + 1] - positions[c * 3 + 1], afterZ = positions[v * 3 + 2] - positions[c * 3 + 2];
+            double n0x = e1y * beforeZ - e1z * beforeY, n0y = e1z * beforeX - e1x * beforeZ, n0z = e1x * beforeY - e1y * beforeX;
+            double n1x = e1y * afterZ - e1z * afterY, n1y = e1z * afterX - e1x * afterZ, n1z = e1x * afterY - e1y * afterX;
+            double dot = n0x * n1x + n0y * n1y + n0z * n1z;
+            double lengths = Math.sqrt((n0x * n0x + n0y * n0y + n0z * n0z) * (n1x * n1x + n1y * n1y + n1z * n1z));
+            if (lengths == 0 || dot <= 0.25 * lengths) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Adds the area weighted quadric of the triangle's plane to its three vertices. The quadric is
+     * stored as the upper triangle of the symmetric 4x4 matrix: a2 ab ac ad b2 bc bd c2 cd d2.
+     */
+    private static void addPlaneQuadric(double[] quadrics, float[] positions, int a, int b, int c) {
+        double e1x = positions[b * 3] - positions[a * 3], e1y = positions[b * 3 + 1] - positions[a * 3 + 1], e1z = positions[b * 3 + 2] - positions[a * 3 + 2];
+        double e2x = positions[c * 3] - positions[a * 3], e2y = positions[c * 3 + 1] - positions[a * 3 + 1], e2z = positions[c * 3 + 2] - positions[a * 3 + 2];
+        double nx = e1y * e2z - e1z * e2y, ny = e1z * e2x - e1x * e2z, nz = e1x * e2y - e1y * e2x;
+        double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+        if (length == 0) return;
+        double area = length / 2;
+        nx /= length;
+        ny /= length;
+        nz /= length;
+        double d = -(nx * positions[a * 3] + ny * positions[a * 3 + 1] + nz * positions[a * 3 + 2]);
+        addQuadric(quadrics, a, nx, ny, nz, d, area);
+        addQuadric(quadrics, b, nx, ny, nz, d, area);
+        addQuadric(quadrics, c, nx, ny, nz, d, area);
+    }
+
+    private static void addQuadric(double[] quadrics, int vertex, double nx, double ny, double nz, double d, double weight) {
+        int q = vertex * 10;
+        quadrics[q] += nx * nx * weight;
+        quadrics[q + 1] += nx * ny * weight;
+        quadrics[q + 2] += nx * nz * weight;
+        quadrics[q + 3] += nx * d * weight;
+        quadrics[q + 4] += ny * ny * weight;
+        quadrics[q + 5] += ny * nz * weight;
+        quadrics[q + 6] += ny * d * weight;
+        quadrics[q + 7] += nz * nz * weight;
+        quadrics[q + 8] += nz * d * weight;
+        quadrics[q + 9] += d * d * weight;
+    }
+
+    /**
+     * Error of the combined quadrics of u and v evaluated at the position of v.
+     */
+    private static double collapseError(double[] quadrics, int u, int v, float[] positions) {
+        double x = positions[v * 3], y = positions[v * 3 + 1], z = positions[v * 3 + 2];
+        return quadricError(quadrics, u * 10, x, y, z) + quadricError(quadrics, v * 10, x, y, z);
+    }
+
+    private static double quadricError(double[] quadrics, int q, double x, double y, double z) {
+        return quadrics[q] * x * x + 2 * quadrics[q + 1] * x * y + 2 * quadrics[q + 2] * x * z + 2 * quadrics[q + 3] * x
+               + quadrics[q + 4] * y * y + 2 * quadrics[q + 5] * y * z + 2 * quadrics[q + 6] * y
+               + quadrics[q + 7] * z * z + 2 * quadrics[q + 8] * z
+               + quadrics[q + 9];
+    }
+}
@@ -0,0 +1,155 @@
+package com.wurmonline.womconverter.processing;
+
+import com.wurmonline.womconverter.model.Mesh;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Splits meshes with more vertices than a WOM mesh can index into several meshes sharing the
+ * materials of the original. Triangles are taken in Morton order of their centroids, so each
+ * part covers a compact region of the model and parts don't interleave spatially.
+ */
+public final class MeshSplitter {
+
+    /**
+     * Most vertices a WOM mesh can address with its signed 16-bit indices.
+     */
+    public static final int MAX_VERTICES = Short.MAX_VALUE + 1;
+
+    private static final int MORTON_BITS = 10;
+
+    private MeshSplitter() {
+    }
+
+    public static boolean needsSplit(Mesh mesh) {
+        return mesh.getVerticesCount() > MAX_VERTICES;
+    }
+
+    /**
+     * Splits the mesh into parts of at most {@code maxVertices} vertices. Parts are named after the
+     * mesh with a {@code _part<n>} suffix, counted from 1, and only contain vertices they use.
+     */
+    public static List<Mesh> split(Mesh mesh, int maxVertices) {
+        if (maxVertices < 3) {
+            throw new IllegalArgumentException("Parts must be allowed at least 3 vertices");
+        }
+        int[] indices = mesh.getIndices();
+        int trianglesCount = indices.length / 3;
+        long[] order = mortonOrder(mesh.getPositions(), mesh.getVerticesCount(), indices);
+
+        List<Mesh> parts = new ArrayList<>();
+        int[] localIndex = new int[mesh.getVerticesCount()];
+        int[] owner = new int[mesh.getVerticesCount()];
+        int[] partVertices = new int[maxVertices];
+        int[] partIndices = new int[Math.min(indices.length, maxVertices * 6)];
+        int partVerticesCount = 0;
+        int partIndicesCount = 0;
+        int part = 1;
+
+        for (int i = 0; i < trianglesCount; i++) {
+            int t = (int) order[i];
+            int added = 0;
+            for (int k = 0; k < 3; k++) {
+                int v = indices[t * 3 + k];
+                if (owner[v] != part && (k < 1 || v != indices[t * 3]) && (k < 2 || v != indices[t * 3 + 1])) added++;
+            }
+            if (partVerticesCount + added > maxVertices) {
+                parts.add(createPart(mesh, part, partVertices, partVerticesCount, partIndices, partIndicesCount));
+                part++;
+                partVerticesCount = 0;
+                partIndicesCount = 0;
+            }
+            for (int k = 0; k < 3; k++) {
+                int v = indices[t * 3 + k];
+                if (owner[v] != part) {
+                    owner[v] = part;
+                    localIndex[v] = partVerticesCount;
+                    partVertices[partVerticesCount++] = v;
+                }
+                if (partIndicesCount == partIndices.length) {
+                    partIndices = Arrays.copyOf(partIndices, partIndices.length * 2);
+                }
+                partIndices[partIndicesCount++] = localIndex[v];
+            }
+        }
+        if (partIndicesCount > 0 || parts.isEmpty()) {
+            parts.add(createPart(mesh, part, partVertices, partVerticesCount, partIndices, partIndicesCount));
+        }
+        return parts;
+    }
+
+    /**
+     * Triangle numbers sorted by the Morton code of their centroid, in the low 32 bits of each entry.
+     */
+    private static long[] mortonOrder(float[] positions, int verticesCount, int[] indices) {
+        float[] min = {Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE};
+        float[] max = {-Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+        for (int v = 0; v < verticesCount; v++) {
+            for (int c = 0; c < 3; c++) {
+                min[c] = Math.min(min[c], positions[v * 3 + c]);
+                max[c] = Math.max(max[c], positions[v * 3 + c]);
+            }
+        }
+        // same scale on all axes, so the grid cells are cubes and flat models aren't cut by height
+        float extent = Math.max(max[0] - min[0], Math.max(max[1] - min[1], max[2] - min[2]));
+        float scale = extent > 0 ? ((1 << MORTON_BITS) - 1) / extent : 0;
+
+        int trianglesCount = indices.length / 3;
+        long[] order = new long[trianglesCount];
+        for (int t = 0; t < trianglesCount; t++) {
+            long code = 0;
+            for (int c = 0; c < 3; c++) {
+                float centroid = (positions[indices[t * 3] * 3 + c] + positions[indices[t * 3 + 1] * 3 + c] + positions[indices[t * 3 + 2] * 3 + c]) / 3;
+                code |= spreadBits((int) ((centroid - min[c]) * scale)) << c;
+            }
+            order[t] = code << 32 | t;
+        }
+        Arrays.sort(order);
+        return order;
+    }
+
+    /**
+     * Inserts two zero bits before each of the lowest 10 bits of the value.
+     */
+    private static long spreadBits(int value) {
+        long x = value & 0x3ff;
+        x = (x | x << 16) & 0x30000ffL;
+        x = (x | x << 8) & 0x300f00fL;
+        x = (x | x << 4) & 0x30c30c3L;
+        x = (x | x << 2) & 0x9249249L;
+        return x;
+    }
+
+    private static Mesh createPart(Mesh mesh, int part, int[] vertices, int verticesCount, int[] indices, int indicesCount) {
+        return extract(mesh, mesh.getName() + "_part" + part, vertices, verticesCount, indices, indicesCount);
+    }
+
+    /**
+     * Creates a mesh with the given vertices of the source mesh, in the given order, and indices
+     * referring to positions in that order. Materials are shared with the source mesh.
+     */
+    static Mesh extract(Mesh mesh, String name, int[] vertices, int verticesCount, int[] indices, int indicesCount) {
+        Mesh result = new Mesh(name, verticesCount, mesh.hasVertexColor(), mesh.hasTangents(), mesh.hasBinormal());
+        gather(mesh.getPositions(), result.getPositions(), vertices, verticesCount, 3);
+        gather(mesh.getNormals(), result.getNormals(), vertices, verticesCount, 3);
+        gather(mesh.getUvs(), result.getUvs(), vertices, verticesCount, 2);
+        gather(mesh.getColors(), result.getColors(), vertices, verticesCount, 3);
+        gather(mesh.getTangents(), result.getTangents(), vertices, verticesCount, 3);
+        gather(mesh.getBinormals(), result.getBinormals(), vertices, verticesCount, 3);
+        if (mesh.hasSkinning()) {
+            result.setSkin(mesh.getSkin().gather(vertices, verticesCount));
+        }
+        result.setIndices(Arrays.copyOf(indices, indicesCount));
+        result.setMaterials(mesh.getMaterials());
+        return result;
+    }
+
+    private static void gather(float[] source, float[] target, int[] vertices, int verticesCount, int components) {
+        if (source == null) return;
+        for (int i = 0; i < verticesCount; i++) {
+            System.arraycopy(source, vertices[i] * components, target, i * components, components);
+        }
+    }
+}